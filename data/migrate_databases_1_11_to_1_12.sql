@@ -0,0 +1,89 @@
+-- Replaces the shouterIDs lists of the shouts with references to the previous shout.
+-- Every numbered shouts and templates table (shouts1, shouts2, ...) is migrated, the
+-- amounts are read from the tableamounts table. Run while the server is down.
+
+USE fusrodah_db;
+
+DELIMITER //
+
+CREATE PROCEDURE run_sql(IN statementText TEXT)
+BEGIN
+	SET @migrationSql = statementText;
+	PREPARE migrationStatement FROM @migrationSql;
+	EXECUTE migrationStatement;
+	DEALLOCATE PREPARE migrationStatement;
+END //
+
+CREATE PROCEDURE migrate_shout_chains()
+BEGIN
+	DECLARE shoutTables INT DEFAULT 1;
+	DECLARE templateTables INT DEFAULT 1;
+	DECLARE i INT;
+
+	SELECT GREATEST(1, IFNULL(MAX(latestIndex), 1)) INTO shoutTables
+		FROM fusrodah_management_db.tableamounts WHERE tableName = 'shouts';
+	SELECT GREATEST(1, IFNULL(MAX(latestIndex), 1)) INTO templateTables
+		FROM fusrodah_management_db.tableamounts WHERE tableName = 'templates';
+
+	-- The shouts of every table are collected in one place, since the parent of a shout
+	-- may be in a different table than the shout itself
+	CREATE TABLE shout_chains
+	(
+		id 			bigint 			NOT NULL PRIMARY KEY,
+		templateID 	bigint 			NOT NULL,
+		shouterIDs 	TEXT 			NOT NULL,
+		INDEX (templateID)
+	);
+
+	SET i = 1;
+	WHILE i <= shoutTables DO
+		CALL run_sql(CONCAT('ALTER TABLE shouts', i,
+			' ADD COLUMN shouterID bigint NOT NULL DEFAULT 0,',
+			' ADD COLUMN parentID bigint NOT NULL DEFAULT -1,',
+			' ADD INDEX (templateID)'));
+
+		-- The last id in the list is the shouter of the shout
+		CALL run_sql(CONCAT('UPDATE shouts', i,
+			' SET shouterID = SUBSTRING_INDEX(shouterIDs, ''+'', -1)'));
+
+		CALL run_sql(CONCAT('INSERT INTO shout_chains (id, templateID, shouterIDs)',
+			' SELECT id, templateID, shouterIDs FROM shouts', i));
+		SET i = i + 1;
+	END WHILE;
+
+	-- The parent is the latest earlier shout of the same template that has the list
+	-- without the last shouter
+	SET i = 1;
+	WHILE i <= shoutTables DO
+		CALL run_sql(CONCAT('UPDATE shouts', i, ' s SET s.parentID = IFNULL(',
+			'(SELECT MAX(p.id) FROM shout_chains p WHERE p.templateID = s.templateID',
+			' AND p.id < s.id AND s.shouterIDs = CONCAT(p.shouterIDs, ''+'', s.shouterID)),',
+			' -1)'));
+		SET i = i + 1;
+	END WHILE;
+
+	SET i = 1;
+	WHILE i <= shoutTables DO
+		CALL run_sql(CONCAT('ALTER TABLE shouts', i,
+			' DROP COLUMN shouterIDs,',
+			' ALTER COLUMN shouterID DROP DEFAULT,',
+			' ALTER COLUMN parentID DROP DEFAULT'));
+		SET i = i + 1;
+	END WHILE;
+
+	DROP TABLE shout_chains;
+
+	-- The template cleanup only reads the incomplete templates
+	SET i = 1;
+	WHILE i <= templateTables DO
+		CALL run_sql(CONCAT('ALTER TABLE templates', i, ' ADD INDEX (completed)'));
+		SET i = i + 1;
+	END WHILE;
+END //
+
+DELIMITER ;
+
+CALL migrate_shout_chains();
+
+DROP PROCEDURE migrate_shout_chains;
+DROP PROCEDURE run_sql;
@@ -0,0 +1,93 @@
+-- Stores the times as milliseconds since the epoch instead of formatted dates.
+-- Every numbered table (shouts1, shouts2, ...) is migrated, the amounts are read from the
+-- tableamounts table. Run while the server is down.
+-- The old dates are converted in place. They were written by SimpleDate in the server's
+-- time zone, so run this in a session with the same time zone. Check that @timeFormat
+-- matches the stored dates before running. Dates that can't be parsed are replaced:
+-- * Shouts and templates are treated as expired. They only live for 45 minutes anyway.
+-- * Users may shout again right away.
+-- * Victories are kept for another week, counting from the migration.
+
+USE fusrodah_db;
+
+SET @timeFormat = '%Y-%m-%d %H:%i:%s';
+
+DELIMITER //
+
+CREATE PROCEDURE run_sql(IN statementText TEXT)
+BEGIN
+	SET @migrationSql = statementText;
+	PREPARE migrationStatement FROM @migrationSql;
+	EXECUTE migrationStatement;
+	DEALLOCATE PREPARE migrationStatement;
+END //
+
+-- Replaces a date column with a bigint column of the same name in every numbered table
+CREATE PROCEDURE convert_time_column(IN baseName VARCHAR(32), IN columnName VARCHAR(32),
+	IN fallbackMillis TEXT)
+BEGIN
+	DECLARE tableCount INT DEFAULT 1;
+	DECLARE i INT DEFAULT 1;
+
+	SELECT GREATEST(1, IFNULL(MAX(latestIndex), 1)) INTO tableCount
+		FROM fusrodah_management_db.tableamounts WHERE tableName = baseName;
+
+	WHILE i <= tableCount DO
+		CALL run_sql(CONCAT('ALTER TABLE ', baseName, i,
+			' ADD COLUMN convertedTime bigint NOT NULL DEFAULT 0'));
+
+		CALL run_sql(CONCAT('UPDATE ', baseName, i, ' SET convertedTime = IFNULL(',
+			'UNIX_TIMESTAMP(STR_TO_DATE(', columnName, ', @timeFormat)) * 1000, ',
+			fallbackMillis, ')'));
+
+		CALL run_sql(CONCAT('ALTER TABLE ', baseName, i,
+			' DROP COLUMN ', columnName, ',',
+			' CHANGE COLUMN convertedTime ', columnName, ' bigint NOT NULL'));
+		SET i = i + 1;
+	END WHILE;
+END //
+
+CREATE PROCEDURE migrate_times()
+BEGIN
+	DECLARE templateTables INT DEFAULT 1;
+	DECLARE victoryTables INT DEFAULT 1;
+	DECLARE i INT;
+
+	SELECT GREATEST(1, IFNULL(MAX(latestIndex), 1)) INTO templateTables
+		FROM fusrodah_management_db.tableamounts WHERE tableName = 'templates';
+	SELECT GREATEST(1, IFNULL(MAX(latestIndex), 1)) INTO victoryTables
+		FROM fusrodah_management_db.tableamounts WHERE tableName = 'victories';
+
+	-- The template cleanup index is rebuilt with the converted column
+	SET i = 1;
+	WHILE i <= templateTables DO
+		CALL run_sql(CONCAT('ALTER TABLE templates', i, ' DROP INDEX completed'));
+		SET i = i + 1;
+	END WHILE;
+
+	CALL convert_time_column('shouts', 'created', '0');
+	CALL convert_time_column('templates', 'lastShoutTime', '0');
+	CALL convert_time_column('users', 'lastShoutTime', '0');
+	CALL convert_time_column('victories', 'created', 'UNIX_TIMESTAMP() * 1000');
+
+	SET i = 1;
+	WHILE i <= templateTables DO
+		CALL run_sql(CONCAT('ALTER TABLE templates', i,
+			' ADD INDEX (completed, lastShoutTime)'));
+		SET i = i + 1;
+	END WHILE;
+
+	SET i = 1;
+	WHILE i <= victoryTables DO
+		CALL run_sql(CONCAT('ALTER TABLE victories', i, ' ADD INDEX (created)'));
+		SET i = i + 1;
+	END WHILE;
+END //
+
+DELIMITER ;
+
+CALL migrate_times();
+
+DROP PROCEDURE migrate_times;
+DROP PROCEDURE convert_time_column;
+DROP PROCEDURE run_sql;
@@ -0,0 +1,39 @@
+-- Adds the indexes used for filtering the shout, template and victory lists.
+-- Every numbered table (shouts1, shouts2, ...) is migrated, the amounts are read from the
+-- tableamounts table.
+
+USE fusrodah_db;
+
+DELIMITER //
+
+CREATE PROCEDURE run_sql(IN statementText TEXT)
+BEGIN
+	SET @migrationSql = statementText;
+	PREPARE migrationStatement FROM @migrationSql;
+	EXECUTE migrationStatement;
+	DEALLOCATE PREPARE migrationStatement;
+END //
+
+-- Adds the index to every numbered table
+CREATE PROCEDURE add_index(IN baseName VARCHAR(32), IN columnName VARCHAR(32))
+BEGIN
+	DECLARE tableCount INT DEFAULT 1;
+	DECLARE i INT DEFAULT 1;
+
+	SELECT GREATEST(1, IFNULL(MAX(latestIndex), 1)) INTO tableCount
+		FROM fusrodah_management_db.tableamounts WHERE tableName = baseName;
+
+	WHILE i <= tableCount DO
+		CALL run_sql(CONCAT('ALTER TABLE ', baseName, i, ' ADD INDEX (', columnName, ')'));
+		SET i = i + 1;
+	END WHILE;
+END //
+
+DELIMITER ;
+
+CALL add_index('shouts', 'shouterID');
+CALL add_index('templates', 'senderID');
+CALL add_index('victories', 'templateID');
+
+DROP PROCEDURE add_index;
+DROP PROCEDURE run_sql;
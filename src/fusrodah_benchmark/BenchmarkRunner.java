@@ -0,0 +1,59 @@
+package fusrodah_benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class runs the benchmarks with fixed settings so that the results of different 
+ * runs can be compared with each other
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class BenchmarkRunner
+{
+	// CONSTRUCTOR	--------------------------------
+	
+	private BenchmarkRunner()
+	{
+		// The interface is static
+	}
+	
+	
+	// MAIN METHOD	--------------------------------
+	
+	/**
+	 * Runs the benchmarks and writes the results into a file
+	 * @param args The name of the result file (optional, default = 
+	 * benchmark_results.json). The second parameter is a regular expression that selects 
+	 * the benchmarks (optional, default = all benchmarks).
+	 */
+	public static void main(String[] args)
+	{
+		String resultFileName = "benchmark_results.json";
+		if (args.length > 0)
+			resultFileName = args[0];
+		
+		String include = "fusrodah_benchmark\\..*";
+		if (args.length > 1)
+			include = args[1];
+		
+		Options options = new OptionsBuilder().include(include).forks(2)
+				.warmupIterations(5).measurementIterations(10)
+				.resultFormat(ResultFormatType.JSON).result(resultFileName).build();
+		
+		try
+		{
+			new Runner(options).run();
+		}
+		catch (RunnerException e)
+		{
+			System.err.println("Failed to run the benchmarks");
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
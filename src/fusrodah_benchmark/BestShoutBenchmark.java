@@ -0,0 +1,111 @@
+package fusrodah_benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fusrodah_main.Location;
+import fusrodah_main.LocationGrid;
+import fusrodah_rest.ShoutEntity;
+import fusrodah_rest.ShoutScorer;
+import fusrodah_rest.ShoutScorer.CandidateScore;
+import nexus_http.HttpException;
+
+/**
+ * This benchmark measures the best shout search over synthetic shouts. The shouts are 
+ * database entities, so the benchmark uses their properties directly: the candidates are 
+ * searched from a location grid and selected with {@link ShoutScorer}, the same way as in 
+ * the best shout list.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BestShoutBenchmark
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How many live shouts there are in the city
+	 */
+	@Param({"1000", "10000"})
+	public int shoutAmount;
+	
+	private LocationGrid grid;
+	private Location[] origins;
+	private int[] shouterAmounts;
+	private long[] ages;
+	private Location start, goal, listener;
+	private ShoutScorer scorer;
+	private CandidateScore<String> candidateScore;
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Places the shouts around Helsinki. The same seed is used each time so that the 
+	 * results can be compared between runs.
+	 */
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(42);
+		this.grid = new LocationGrid(ShoutEntity.MAXIMUM_REACH);
+		this.origins = new Location[this.shoutAmount];
+		this.shouterAmounts = new int[this.shoutAmount];
+		this.ages = new long[this.shoutAmount];
+		
+		for (int i = 0; i < this.shoutAmount; i++)
+		{
+			this.origins[i] = new Location(60.17 + random.nextGaussian() * 0.03, 
+					24.94 + random.nextGaussian() * 0.06);
+			this.shouterAmounts[i] = 1 + random.nextInt(20);
+			this.ages[i] = random.nextInt(ShoutEntity.SHOUT_CAN_BE_HEARD_DURATION * 60 * 1000);
+			this.grid.add(String.valueOf(i), this.origins[i]);
+		}
+		
+		this.start = new Location(60.20, 24.90);
+		this.goal = new Location(60.15, 25.00);
+		this.listener = new Location(60.17, 24.94);
+		this.scorer = new ShoutScorer();
+		this.candidateScore = new CandidateScore<String>()
+		{
+			@Override
+			public double score(String candidate)
+			{
+				int index = Integer.parseInt(candidate);
+				return BestShoutBenchmark.this.scorer.score(
+						BestShoutBenchmark.this.shouterAmounts[index], 
+						BestShoutBenchmark.this.ages[index], 
+						BestShoutBenchmark.this.origins[index], ShoutEntity.MAXIMUM_REACH, 
+						BestShoutBenchmark.this.start, BestShoutBenchmark.this.goal, 
+						BestShoutBenchmark.this.listener);
+			}
+		};
+	}
+	
+	/**
+	 * Finds and ranks the shouts near the listener
+	 * @return The identifiers of the selected shouts, the best one first
+	 * @throws HttpException If the shouts couldn't be scored
+	 */
+	@Benchmark
+	public List<String> findBestShouts() throws HttpException
+	{
+		List<String> candidates = this.grid.findWithin(this.listener, 
+				ShoutEntity.MAXIMUM_REACH);
+		
+		return this.scorer.selectBest(candidates, this.candidateScore);
+	}
+}
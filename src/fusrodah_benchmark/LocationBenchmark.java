@@ -0,0 +1,145 @@
+package fusrodah_benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fusrodah_main.Location;
+
+/**
+ * These benchmarks measure the location calculations that are done for each candidate 
+ * shout
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocationBenchmark
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final int LOCATION_AMOUNT = 1024;
+	
+	private Location origin;
+	private Location[] locations;
+	private String[] locationStrings;
+	private double[] latitudeRads, cosLatitudes, longitudeRads, distances;
+	private int[] foundIndices;
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Creates the locations around Helsinki. The same seed is used each time so that the 
+	 * results can be compared between runs.
+	 */
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(42);
+		this.origin = new Location(60.17, 24.94);
+		this.locations = new Location[LOCATION_AMOUNT];
+		this.locationStrings = new String[LOCATION_AMOUNT];
+		this.latitudeRads = new double[LOCATION_AMOUNT];
+		this.cosLatitudes = new double[LOCATION_AMOUNT];
+		this.longitudeRads = new double[LOCATION_AMOUNT];
+		this.distances = new double[LOCATION_AMOUNT];
+		this.foundIndices = new int[LOCATION_AMOUNT];
+		
+		for (int i = 0; i < LOCATION_AMOUNT; i++)
+		{
+			Location location = new Location(60.17 + random.nextGaussian() * 0.01, 
+					24.94 + random.nextGaussian() * 0.02);
+			this.locations[i] = location;
+			this.locationStrings[i] = location.toString();
+			this.latitudeRads[i] = location.getLatitudeRadians();
+			this.cosLatitudes[i] = location.getCosLatitude();
+			this.longitudeRads[i] = location.getLongitudeRadians();
+		}
+	}
+	
+	/**
+	 * Calculates the distance to each location one at a time
+	 * @param blackhole The blackhole that consumes the results
+	 */
+	@Benchmark
+	public void distance(Blackhole blackhole)
+	{
+		for (Location location : this.locations)
+		{
+			blackhole.consume(this.origin.getDistanceFrom(location));
+		}
+	}
+	
+	/**
+	 * Checks whether each location is within a shout's reach
+	 * @param blackhole The blackhole that consumes the results
+	 */
+	@Benchmark
+	public void isWithin(Blackhole blackhole)
+	{
+		for (Location location : this.locations)
+		{
+			blackhole.consume(this.origin.isWithin(location, 1000));
+		}
+	}
+	
+	/**
+	 * Calculates the distances with the array kernel
+	 * @return The calculated distances
+	 */
+	@Benchmark
+	public double[] distanceKernel()
+	{
+		this.origin.calculateDistances(this.latitudeRads, this.cosLatitudes, 
+				this.longitudeRads, LOCATION_AMOUNT, this.distances);
+		return this.distances;
+	}
+	
+	/**
+	 * Finds the locations within a shout's reach with the array kernel
+	 * @return How many locations were found
+	 */
+	@Benchmark
+	public int findWithinKernel()
+	{
+		return this.origin.findWithin(this.latitudeRads, this.cosLatitudes, 
+				this.longitudeRads, LOCATION_AMOUNT, 1000, this.foundIndices);
+	}
+	
+	/**
+	 * Calculates the direction to each location
+	 * @param blackhole The blackhole that consumes the results
+	 */
+	@Benchmark
+	public void direction(Blackhole blackhole)
+	{
+		for (Location location : this.locations)
+		{
+			blackhole.consume(this.origin.getDirectionTowards(location));
+		}
+	}
+	
+	/**
+	 * Parses each location from its string format
+	 * @param blackhole The blackhole that consumes the results
+	 */
+	@Benchmark
+	public void parse(Blackhole blackhole)
+	{
+		for (String locationString : this.locationStrings)
+		{
+			blackhole.consume(new Location(locationString));
+		}
+	}
+}
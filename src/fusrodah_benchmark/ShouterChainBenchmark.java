@@ -0,0 +1,139 @@
+package fusrodah_benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fusrodah_rest.ShouterChain;
+import fusrodah_rest.ShouterChain.ShoutLinks;
+import nexus_http.HttpException;
+
+/**
+ * These benchmarks compare the shouter membership checks. The "+"-joined id string the 
+ * shouts used to store is kept here as the baseline. The chain is measured both when it is 
+ * already known and when it must first be resolved by going through the previous shouts, 
+ * which are synthetic here.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShouterChainBenchmark
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How many shouters there are in the chain
+	 */
+	@Param({"5", "50", "500"})
+	public int chainLength;
+	
+	private String shouterIDs;
+	private ShouterChain chain;
+	private long[] shouterIDsByShout;
+	private String missingUserID;
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Creates the chain and its string version
+	 */
+	@Setup
+	public void setup()
+	{
+		StringBuilder ids = new StringBuilder();
+		ShouterChain chain = null;
+		this.shouterIDsByShout = new long[this.chainLength];
+		for (int i = 0; i < this.chainLength; i++)
+		{
+			long id = 1000 + i * 7;
+			this.shouterIDsByShout[i] = id;
+			chain = new ShouterChain(chain, id);
+			if (i > 0)
+				ids.append("+");
+			ids.append(id);
+		}
+		
+		this.shouterIDs = ids.toString();
+		this.chain = chain;
+		// A user who hasn't shouted yet is the common case when looking for shouts
+		this.missingUserID = "999";
+	}
+	
+	/**
+	 * Checks the membership by splitting the joined string, like the shouts used to do
+	 * @return Was the user found
+	 */
+	@Benchmark
+	public boolean splitString()
+	{
+		for (String id : this.shouterIDs.split("\\+"))
+		{
+			if (id.equals(this.missingUserID))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks the membership from the shouter chain
+	 * @return Was the user found
+	 */
+	@Benchmark
+	public boolean chainContains()
+	{
+		return this.chain.contains(this.missingUserID);
+	}
+	
+	/**
+	 * Resolves the chain of the last shout when none of the chains are known yet, then 
+	 * checks the membership. Each shout refers to the previous one by its index.
+	 * @return Was the user found
+	 * @throws HttpException If the chain couldn't be resolved
+	 */
+	@Benchmark
+	public boolean resolveAndContains() throws HttpException
+	{
+		final ShouterChain[] chains = new ShouterChain[this.chainLength];
+		ShouterChain resolved = ShouterChain.resolve(this.chainLength - 1, 
+				new ShoutLinks<Integer>()
+		{
+			@Override
+			public ShouterChain getKnownChain(Integer shout)
+			{
+				return chains[shout];
+			}
+			
+			@Override
+			public void setChain(Integer shout, ShouterChain chain)
+			{
+				chains[shout] = chain;
+			}
+			
+			@Override
+			public Integer getParent(Integer shout)
+			{
+				return shout == 0 ? null : shout - 1;
+			}
+			
+			@Override
+			public long getShouterID(Integer shout)
+			{
+				return ShouterChainBenchmark.this.shouterIDsByShout[shout];
+			}
+		});
+		
+		return resolved.contains(this.missingUserID);
+	}
+}
@@ -0,0 +1,465 @@
+package fusrodah_main;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ConnectionPool keeps a limited amount of database connections open and lends them to 
+ * the callers. Closing a lent connection returns it to the pool. Each connection also 
+ * keeps its most recently used prepared statements, so a statement is only prepared once 
+ * per connection. Closing a cached statement simply makes it available again.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class ConnectionPool
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How many statements each connection keeps prepared at most
+	 */
+	public static final int STATEMENT_CACHE_SIZE = 50;
+	// Connections that have been idle longer than this are checked before they are lent
+	private static final long VALIDATION_IDLE_MILLIS = 30 * 1000;
+	
+	private final String connectionTarget, user, password;
+	private final int maxSize;
+	private final long maxWaitMillis;
+	
+	private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+	private final LatencyHistogram waitTimes = new LatencyHistogram();
+	private int openConnections, lentConnections;
+	private long statementsPrepared, statementsReused;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new pool. The connections are opened as they are needed.
+	 * @param connectionTarget The address of the database server 
+	 * (Eg. jdbc:mysql://localhost:3306/)
+	 * @param user The database user
+	 * @param password The password of the database user
+	 * @param maxSize How many connections can be open at once
+	 * @param maxWaitMillis How long a caller waits for a free connection at most
+	 */
+	public ConnectionPool(String connectionTarget, String user, String password, 
+			int maxSize, long maxWaitMillis)
+	{
+		this.connectionTarget = connectionTarget;
+		this.user = user;
+		this.password = password;
+		this.maxSize = Math.max(1, maxSize);
+		this.maxWaitMillis = maxWaitMillis;
+		this.openConnections = 0;
+		this.lentConnections = 0;
+		this.statementsPrepared = 0;
+		this.statementsReused = 0;
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Lends a connection from the pool. The connection must be closed afterwards, which 
+	 * returns it to the pool.
+	 * @return A database connection
+	 * @throws SQLException If no connection became available in time or if a new 
+	 * connection couldn't be opened
+	 */
+	public Connection getConnection() throws SQLException
+	{
+		long started = System.nanoTime();
+		long deadline = System.currentTimeMillis() + this.maxWaitMillis;
+		PooledConnection connection = null;
+		boolean openNew = false;
+		
+		synchronized (this)
+		{
+			while (true)
+			{
+				connection = this.idleConnections.pollFirst();
+				if (connection != null)
+					break;
+				if (this.openConnections < this.maxSize)
+				{
+					// Reserves a place for the new connection
+					this.openConnections++;
+					openNew = true;
+					break;
+				}
+				
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0)
+					throw new SQLException("No database connection became available in " + 
+							this.maxWaitMillis + " ms");
+				try
+				{
+					wait(remaining);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for a connection", e);
+				}
+			}
+			this.lentConnections++;
+		}
+		
+		try
+		{
+			if (openNew)
+				connection = new PooledConnection(DriverManager.getConnection(
+						this.connectionTarget, this.user, this.password));
+			else if (connection.idleSinceMillis + VALIDATION_IDLE_MILLIS < 
+					System.currentTimeMillis() && !connection.physical.isValid(1))
+			{
+				// Replaces a connection the server has closed in the meanwhile
+				connection.closePhysical();
+				connection = new PooledConnection(DriverManager.getConnection(
+						this.connectionTarget, this.user, this.password));
+			}
+		}
+		catch (SQLException e)
+		{
+			synchronized (this)
+			{
+				this.openConnections--;
+				this.lentConnections--;
+				notifyAll();
+			}
+			throw e;
+		}
+		
+		this.waitTimes.record(System.nanoTime() - started);
+		return connection.lend();
+	}
+	
+	/**
+	 * Closes the idle connections. The lent connections are closed when they are returned.
+	 */
+	public void close()
+	{
+		synchronized (this)
+		{
+			for (PooledConnection connection : this.idleConnections)
+			{
+				connection.closePhysical();
+				this.openConnections--;
+			}
+			this.idleConnections.clear();
+		}
+	}
+	
+	/**
+	 * @return The current state of the pool as attributes
+	 */
+	public Map<String, String> toAttributes()
+	{
+		Map<String, String> attributes = this.waitTimes.toAttributes();
+		synchronized (this)
+		{
+			attributes.put("maxSize", String.valueOf(this.maxSize));
+			attributes.put("open", String.valueOf(this.openConnections));
+			attributes.put("lent", String.valueOf(this.lentConnections));
+			attributes.put("idle", String.valueOf(this.idleConnections.size()));
+			attributes.put("statementsPrepared", String.valueOf(this.statementsPrepared));
+			attributes.put("statementsReused", String.valueOf(this.statementsReused));
+		}
+		
+		return attributes;
+	}
+	
+	private void giveBack(PooledConnection connection)
+	{
+		// The connection is reset for the next user. Broken connections are discarded.
+		boolean usable = true;
+		try
+		{
+			if (!connection.physical.getAutoCommit())
+			{
+				connection.physical.rollback();
+				connection.physical.setAutoCommit(true);
+			}
+		}
+		catch (SQLException e)
+		{
+			usable = false;
+		}
+		
+		synchronized (this)
+		{
+			this.lentConnections--;
+			if (usable)
+			{
+				connection.idleSinceMillis = System.currentTimeMillis();
+				this.idleConnections.addFirst(connection);
+			}
+			else
+				this.openConnections--;
+			notifyAll();
+		}
+		
+		if (!usable)
+			connection.closePhysical();
+	}
+	
+	private synchronized void countStatement(boolean reused)
+	{
+		if (reused)
+			this.statementsReused++;
+		else
+			this.statementsPrepared++;
+	}
+	
+	private static Object invoke(Object target, Method method, Object[] args) throws 
+			Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private class PooledConnection
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final Connection physical;
+		private final Map<String, CachedStatement> statements;
+		private long idleSinceMillis;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public PooledConnection(Connection physical)
+		{
+			this.physical = physical;
+			this.idleSinceMillis = System.currentTimeMillis();
+			// The least recently used statements are closed once the cache is full
+			this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 2916455061717062431L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest)
+				{
+					if (size() <= STATEMENT_CACHE_SIZE)
+						return false;
+					
+					eldest.getValue().evict();
+					return true;
+				}
+			};
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public Connection lend()
+		{
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), 
+					new Class<?>[] {Connection.class}, new ConnectionHandle(this));
+		}
+		
+		public PreparedStatement prepare(String sql, Connection handle) throws SQLException
+		{
+			CachedStatement cached = this.statements.get(sql);
+			if (cached != null && !cached.inUse)
+			{
+				countStatement(true);
+				return cached.lend(handle);
+			}
+			
+			countStatement(false);
+			PreparedStatement statement = this.physical.prepareStatement(sql);
+			
+			// A statement that is already in use is not replaced in the cache
+			if (cached != null)
+				return statement;
+			
+			cached = new CachedStatement(statement);
+			this.statements.put(sql, cached);
+			return cached.lend(handle);
+		}
+		
+		public void closePhysical()
+		{
+			for (CachedStatement statement : new HashMap<>(this.statements).values())
+			{
+				statement.closePhysical();
+			}
+			this.statements.clear();
+			
+			try
+			{
+				this.physical.close();
+			}
+			catch (SQLException e)
+			{
+				// The connection is discarded anyway
+			}
+		}
+	}
+	
+	private class ConnectionHandle implements InvocationHandler
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final PooledConnection connection;
+		private boolean closed;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public ConnectionHandle(PooledConnection connection)
+		{
+			this.connection = connection;
+			this.closed = false;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----------------
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			String name = method.getName();
+			if (name.equals("close"))
+			{
+				// A connection can only be returned once
+				if (!this.closed)
+				{
+					this.closed = true;
+					giveBack(this.connection);
+				}
+				return null;
+			}
+			else if (name.equals("isClosed"))
+				return this.closed;
+			else if (this.closed)
+				throw new SQLException("The connection has already been closed");
+			else if (name.equals("prepareStatement") && args.length == 1)
+				return this.connection.prepare((String) args[0], (Connection) proxy);
+			
+			return ConnectionPool.invoke(this.connection.physical, method, args);
+		}
+	}
+	
+	private static class CachedStatement
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final PreparedStatement physical;
+		private boolean inUse, evicted;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public CachedStatement(PreparedStatement physical)
+		{
+			this.physical = physical;
+			this.inUse = false;
+			this.evicted = false;
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public PreparedStatement lend(final Connection connectionHandle)
+		{
+			this.inUse = true;
+			return (PreparedStatement) Proxy.newProxyInstance(
+					PreparedStatement.class.getClassLoader(), 
+					new Class<?>[] {PreparedStatement.class}, new InvocationHandler()
+			{
+				private boolean closed = false;
+				
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws 
+						Throwable
+				{
+					String name = method.getName();
+					if (name.equals("close"))
+					{
+						// The statement is kept prepared for the next user
+						if (!this.closed)
+						{
+							this.closed = true;
+							release();
+						}
+						return null;
+					}
+					else if (name.equals("isClosed"))
+						return this.closed;
+					else if (this.closed)
+						throw new SQLException("The statement has already been closed");
+					else if (name.equals("getConnection"))
+						return connectionHandle;
+					
+					return ConnectionPool.invoke(CachedStatement.this.physical, method, args);
+				}
+			});
+		}
+		
+		public void closePhysical()
+		{
+			try
+			{
+				this.physical.close();
+			}
+			catch (SQLException e)
+			{
+				// The statement is discarded anyway
+			}
+		}
+		
+		public void evict()
+		{
+			// A statement that is still in use is closed when it is released
+			if (this.inUse)
+				this.evicted = true;
+			else
+				closePhysical();
+		}
+		
+		private void release()
+		{
+			if (this.evicted)
+			{
+				closePhysical();
+				return;
+			}
+			
+			try
+			{
+				this.physical.clearParameters();
+				this.physical.clearBatch();
+			}
+			catch (SQLException e)
+			{
+				// The statement will simply be prepared again
+			}
+			this.inUse = false;
+		}
+	}
+}
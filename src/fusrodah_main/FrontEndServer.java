@@ -0,0 +1,923 @@
+package fusrodah_main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpStatus;
+
+import nexus_http.HttpException;
+
+/**
+ * FrontEndServer accepts the client connections with a single non-blocking selector 
+ * thread and passes the requests to the REST server running behind it on a local port. 
+ * An idle keep-alive connection only costs a buffer, so a large amount of polling clients 
+ * can stay connected without a thread each. The clients may pipeline their requests, the 
+ * requests of a connection are handled one at a time in the order they arrived. The 
+ * requests are handled by a bounded group of worker threads, which pass them to the REST 
+ * server over persistent local connections once the RequestLimiter gives them a turn. 
+ * The responses are written back by the selector thread.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class FrontEndServer
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final int READ_BUFFER_SIZE = 4 * 1024;
+	private static final int MAX_HEADER_BYTES = 16 * 1024;
+	private static final int MAX_BODY_BYTES = 1024 * 1024;
+	// How many requests a client may pipeline before the server stops reading them
+	private static final int MAX_PIPELINED_REQUESTS = 16;
+	// How many requests may wait for a worker. Each connection only has one request in
+	// the queue at a time, so this is about the amount of busy clients that is served.
+	private static final int MAX_QUEUED_REQUESTS = 10000;
+	private static final int BACKEND_TIMEOUT_MILLIS = 60 * 1000;
+	// The local connections that have been idle longer than this are not used anymore,
+	// since the REST server may have closed them
+	private static final long BACKEND_MAX_IDLE_MILLIS = 2000;
+	
+	// These headers only concern a single connection and are not passed on
+	private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList(
+			"connection", "keep-alive", "proxy-connection", "proxy-authenticate", 
+			"proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", 
+			"content-length"));
+	
+	private final InetSocketAddress address, backendAddress;
+	private final ThreadPoolExecutor workers;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	// The connections whose requests have been handled, waiting for the selector thread
+	private final Queue<ClientConnection> completedConnections;
+	private final BlockingQueue<BackendConnection> idleBackendConnections;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new front end and binds it to its address. The connections are accepted 
+	 * once the server is started.
+	 * @param ip The ip address the front end listens to
+	 * @param port The port the front end listens to
+	 * @param backendPort The local port the REST server listens to
+	 * @param workerThreads How many requests are passed to the REST server at once
+	 * @throws IOException If the address couldn't be bound
+	 */
+	public FrontEndServer(String ip, int port, int backendPort, int workerThreads)
+			throws IOException
+	{
+		this.address = new InetSocketAddress(ip, port);
+		this.backendAddress = new InetSocketAddress("127.0.0.1", backendPort);
+		this.completedConnections = new ConcurrentLinkedQueue<>();
+		this.idleBackendConnections = new LinkedBlockingQueue<>();
+		
+		final AtomicInteger createdThreads = new AtomicInteger();
+		int threads = Math.max(1, workerThreads);
+		this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS), 
+				new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable r)
+					{
+						return new Thread(r, "front-end-worker-" + 
+								createdThreads.incrementAndGet());
+					}
+				});
+		
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.bind(this.address, 1024);
+		this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Starts accepting the client connections in a separate thread
+	 */
+	public void start()
+	{
+		new Thread("front-end-selector")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					handleConnections();
+				}
+				catch (IOException e)
+				{
+					System.err.println("The front end stopped");
+					e.printStackTrace();
+				}
+			}
+		}.start();
+		
+		System.out.println("The front end listens to " + this.address + 
+				" and passes the requests to " + this.backendAddress);
+	}
+	
+	private void handleConnections() throws IOException
+	{
+		while (true)
+		{
+			this.selector.select();
+			writeCompletedResponses();
+			
+			Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid())
+					continue;
+				
+				if (key.isAcceptable())
+				{
+					try
+					{
+						acceptConnections();
+					}
+					catch (IOException e)
+					{
+						// Eg. the open file limit was reached, the other connections are
+						// still served
+						System.err.println("Couldn't accept a connection");
+						e.printStackTrace();
+					}
+					continue;
+				}
+				
+				ClientConnection connection = (ClientConnection) key.attachment();
+				try
+				{
+					if (key.isReadable())
+						connection.read();
+					if (key.isValid() && key.isWritable())
+						connection.write();
+				}
+				catch (IOException e)
+				{
+					// The client disconnected
+					connection.close();
+				}
+			}
+		}
+	}
+	
+	private void acceptConnections() throws IOException
+	{
+		SocketChannel channel;
+		while ((channel = this.serverChannel.accept()) != null)
+		{
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			ClientConnection connection = new ClientConnection(channel);
+			connection.key = channel.register(this.selector, SelectionKey.OP_READ, 
+					connection);
+		}
+	}
+	
+	private void writeCompletedResponses()
+	{
+		ClientConnection connection;
+		while ((connection = this.completedConnections.poll()) != null)
+		{
+			try
+			{
+				connection.completeRequest();
+			}
+			catch (IOException e)
+			{
+				connection.close();
+			}
+		}
+	}
+	
+	// Called by the worker threads
+	private void handleRequest(ClientConnection connection, ClientRequest request)
+	{
+		byte[] response;
+		boolean keepAlive = request.keepAlive;
+		try
+		{
+			// The request is turned away before it's passed on if it doesn't get a turn
+			BackendResponse backendResponse;
+			RequestLimiter.enter();
+			try
+			{
+				backendResponse = forward(request);
+			}
+			finally
+			{
+				RequestLimiter.exit();
+			}
+			response = backendResponse.toClientResponse(keepAlive, 
+					request.method.equals("HEAD"));
+		}
+		catch (ServiceUnavailableException e)
+		{
+			response = createErrorResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, 
+					"Service Unavailable", e.getMessage(), keepAlive);
+		}
+		catch (HttpException e)
+		{
+			response = createErrorResponse(HttpStatus.SC_INTERNAL_SERVER_ERROR, 
+					"Internal Server Error", e.getMessage(), keepAlive);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Couldn't pass the request " + request.target + 
+					" to the REST server");
+			e.printStackTrace();
+			response = createErrorResponse(HttpStatus.SC_BAD_GATEWAY, "Bad Gateway", 
+					"The server couldn't handle the request", keepAlive);
+		}
+		
+		connection.complete(response, keepAlive);
+	}
+	
+	private BackendResponse forward(ClientRequest request) throws IOException
+	{
+		while (true)
+		{
+			BackendConnection backend = pollIdleBackendConnection();
+			boolean reused = backend != null;
+			if (!reused)
+				backend = new BackendConnection(this.backendAddress);
+			
+			try
+			{
+				BackendResponse response = backend.send(request);
+				if (response.reusable)
+				{
+					backend.idleSince = System.currentTimeMillis();
+					this.idleBackendConnections.offer(backend);
+				}
+				else
+					backend.close();
+				
+				return response;
+			}
+			catch (IOException e)
+			{
+				backend.close();
+				
+				// A reused connection may have been closed by the REST server. The reads
+				// are tried again with another connection. The other requests are not
+				// repeated since they may have been handled already.
+				if (!reused || !request.isRepeatable())
+					throw e;
+			}
+		}
+	}
+	
+	private BackendConnection pollIdleBackendConnection()
+	{
+		long now = System.currentTimeMillis();
+		BackendConnection backend;
+		while ((backend = this.idleBackendConnections.poll()) != null)
+		{
+			if (now - backend.idleSince < BACKEND_MAX_IDLE_MILLIS)
+				return backend;
+			backend.close();
+		}
+		
+		return null;
+	}
+	
+	private static byte[] createErrorResponse(int status, String reason, String message, 
+			boolean keepAlive)
+	{
+		byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		String head = "HTTP/1.1 " + status + " " + reason + "\r\n" + 
+				"Content-Type: text/plain; charset=UTF-8\r\n" + 
+				"Content-Length: " + body.length + "\r\n" + 
+				"Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+		
+		return concatenate(head.getBytes(StandardCharsets.ISO_8859_1), body);
+	}
+	
+	private static byte[] concatenate(byte[] first, byte[] second)
+	{
+		byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, bytes, first.length, second.length);
+		return bytes;
+	}
+	
+	private static int indexOfHeaderEnd(ByteBuffer buffer)
+	{
+		for (int i = buffer.position(); i + 3 < buffer.limit(); i++)
+		{
+			if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && 
+					buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n')
+				return i;
+		}
+		
+		return -1;
+	}
+	
+	private static String findHeader(List<String[]> headers, String name)
+	{
+		for (String[] header : headers)
+		{
+			if (header[0].equalsIgnoreCase(name))
+				return header[1];
+		}
+		
+		return null;
+	}
+	
+	private static boolean headerContains(List<String[]> headers, String name, 
+			String token)
+	{
+		String value = findHeader(headers, name);
+		if (value == null)
+			return false;
+		
+		for (String part : value.split(","))
+		{
+			if (part.trim().equalsIgnoreCase(token))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private static void parseHeaderLine(String line, List<String[]> headers)
+			throws IOException
+	{
+		int separator = line.indexOf(':');
+		if (separator <= 0)
+			throw new IOException("Malformed header: " + line);
+		headers.add(new String[] {line.substring(0, separator).trim(), 
+				line.substring(separator + 1).trim()});
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	// Only used by the selector thread, except for the completed response fields
+	private class ClientConnection
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private ByteBuffer readBuffer;
+		private final Queue<ClientRequest> pendingRequests;
+		private final Queue<ByteBuffer> responses;
+		private boolean handlingRequest, inputClosed, closeAfterWrite, closed;
+		
+		// Set by the worker before the connection is passed back to the selector thread
+		private volatile byte[] completedResponse;
+		private volatile boolean completedKeepAlive;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public ClientConnection(SocketChannel channel)
+		{
+			this.channel = channel;
+			this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			this.pendingRequests = new ArrayDeque<>();
+			this.responses = new ArrayDeque<>();
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public void read() throws IOException
+		{
+			if (!this.readBuffer.hasRemaining())
+			{
+				// The buffer only grows for large requests
+				if (this.readBuffer.capacity() >= MAX_HEADER_BYTES + MAX_BODY_BYTES)
+					throw new IOException("The request is too large");
+				this.readBuffer.flip();
+				this.readBuffer = ByteBuffer.allocate(Math.min(this.readBuffer.capacity() * 
+						2, MAX_HEADER_BYTES + MAX_BODY_BYTES)).put(this.readBuffer);
+			}
+			
+			if (this.channel.read(this.readBuffer) < 0)
+				this.inputClosed = true;
+			
+			parseRequests();
+			handleNextRequest();
+			updateInterest();
+			closeIfFinished();
+		}
+		
+		public void write() throws IOException
+		{
+			while (!this.responses.isEmpty())
+			{
+				ByteBuffer response = this.responses.peek();
+				this.channel.write(response);
+				if (response.hasRemaining())
+					break;
+				this.responses.poll();
+			}
+			
+			updateInterest();
+			closeIfFinished();
+		}
+		
+		public void completeRequest() throws IOException
+		{
+			if (this.closed)
+				return;
+			
+			this.handlingRequest = false;
+			this.responses.add(ByteBuffer.wrap(this.completedResponse));
+			this.completedResponse = null;
+			if (!this.completedKeepAlive)
+			{
+				this.closeAfterWrite = true;
+				this.pendingRequests.clear();
+			}
+			
+			handleNextRequest();
+			write();
+		}
+		
+		public void close()
+		{
+			if (this.closed)
+				return;
+			
+			this.closed = true;
+			if (this.key != null)
+				this.key.cancel();
+			try
+			{
+				this.channel.close();
+			}
+			catch (IOException e)
+			{
+				// The connection is closed anyway
+			}
+		}
+		
+		private void parseRequests()
+		{
+			this.readBuffer.flip();
+			try
+			{
+				while (!this.closeAfterWrite)
+				{
+					int headerEnd = indexOfHeaderEnd(this.readBuffer);
+					if (headerEnd < 0)
+					{
+						if (this.readBuffer.remaining() > MAX_HEADER_BYTES)
+							reject(431, "Request Header Fields Too Large", 
+									"The request headers are too large");
+						break;
+					}
+					
+					ClientRequest request;
+					try
+					{
+						byte[] head = new byte[headerEnd - this.readBuffer.position()];
+						this.readBuffer.get(head);
+						request = new ClientRequest(new String(head, 
+								StandardCharsets.ISO_8859_1));
+					}
+					catch (IOException e)
+					{
+						reject(HttpStatus.SC_BAD_REQUEST, "Bad Request", e.getMessage());
+						break;
+					}
+					
+					if (request.chunked)
+					{
+						reject(HttpStatus.SC_LENGTH_REQUIRED, "Length Required", 
+								"Chunked request bodies are not supported");
+						break;
+					}
+					if (request.contentLength > MAX_BODY_BYTES)
+					{
+						reject(HttpStatus.SC_REQUEST_TOO_LONG, "Payload Too Large", 
+								"The request body is too large");
+						break;
+					}
+					
+					// Waits until the whole body has arrived
+					if (this.readBuffer.remaining() < 4 + request.contentLength)
+					{
+						this.readBuffer.position(this.readBuffer.position() - 
+								request.headLength);
+						break;
+					}
+					
+					this.readBuffer.position(this.readBuffer.position() + 4);
+					request.body = new byte[request.contentLength];
+					this.readBuffer.get(request.body);
+					this.pendingRequests.add(request);
+				}
+			}
+			finally
+			{
+				this.readBuffer.compact();
+			}
+		}
+		
+		// The error is answered after the earlier requests and the connection is closed
+		private void reject(int status, String reason, String message)
+		{
+			ClientRequest rejection = new ClientRequest(createErrorResponse(status, reason, 
+					message, false));
+			this.pendingRequests.add(rejection);
+			this.closeAfterWrite = true;
+			this.readBuffer.position(this.readBuffer.limit());
+		}
+		
+		private void handleNextRequest()
+		{
+			if (this.handlingRequest || this.pendingRequests.isEmpty())
+				return;
+			
+			final ClientRequest request = this.pendingRequests.poll();
+			this.handlingRequest = true;
+			if (request.rejection != null)
+			{
+				complete(request.rejection, false);
+				return;
+			}
+			
+			final ClientConnection connection = this;
+			try
+			{
+				workers.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						handleRequest(connection, request);
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				// Every worker is busy and the queue is full
+				complete(createErrorResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, 
+						"Service Unavailable", 
+						"The server is too busy at the moment, please try again later", 
+						request.keepAlive), request.keepAlive);
+			}
+		}
+		
+		// Passes the response to the selector thread, which writes it
+		private void complete(byte[] response, boolean keepAlive)
+		{
+			this.completedResponse = response;
+			this.completedKeepAlive = keepAlive;
+			completedConnections.add(this);
+			selector.wakeup();
+		}
+		
+		private void updateInterest()
+		{
+			if (this.closed)
+				return;
+			
+			int interest = 0;
+			if (!this.inputClosed && !this.closeAfterWrite && 
+					this.pendingRequests.size() < MAX_PIPELINED_REQUESTS)
+				interest |= SelectionKey.OP_READ;
+			if (!this.responses.isEmpty())
+				interest |= SelectionKey.OP_WRITE;
+			this.key.interestOps(interest);
+		}
+		
+		private void closeIfFinished()
+		{
+			if (!this.responses.isEmpty() || this.handlingRequest)
+				return;
+			
+			if (this.closeAfterWrite || (this.inputClosed && this.pendingRequests.isEmpty()))
+				close();
+		}
+	}
+	
+	private static class ClientRequest
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private String method, target;
+		private final List<String[]> headers;
+		private int contentLength, headLength;
+		private boolean keepAlive, chunked;
+		private byte[] body;
+		// The ready error response of a request that couldn't be read
+		private final byte[] rejection;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public ClientRequest(String head) throws IOException
+		{
+			this.headers = new ArrayList<>();
+			this.rejection = null;
+			this.headLength = head.length();
+			
+			String[] lines = head.split("\r\n");
+			String[] requestLine = lines[0].split(" ");
+			if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1."))
+				throw new IOException("Malformed request line: " + lines[0]);
+			
+			this.method = requestLine[0];
+			this.target = requestLine[1];
+			for (int i = 1; i < lines.length; i++)
+			{
+				parseHeaderLine(lines[i], this.headers);
+			}
+			
+			// HTTP/1.1 connections are kept alive unless the client says otherwise
+			if (requestLine[2].equals("HTTP/1.0"))
+				this.keepAlive = headerContains(this.headers, "Connection", "keep-alive");
+			else
+				this.keepAlive = !headerContains(this.headers, "Connection", "close");
+			
+			this.chunked = findHeader(this.headers, "Transfer-Encoding") != null;
+			String length = findHeader(this.headers, "Content-Length");
+			try
+			{
+				this.contentLength = length == null ? 0 : Integer.parseInt(length);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("Invalid content length: " + length);
+			}
+			if (this.contentLength < 0)
+				throw new IOException("Invalid content length: " + length);
+		}
+		
+		public ClientRequest(byte[] rejection)
+		{
+			this.headers = null;
+			this.rejection = rejection;
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public boolean isRepeatable()
+		{
+			return this.method.equals("GET") || this.method.equals("HEAD");
+		}
+		
+		public byte[] toBackendRequest()
+		{
+			StringBuilder head = new StringBuilder();
+			head.append(this.method).append(" ").append(this.target).append(
+					" HTTP/1.1\r\n");
+			for (String[] header : this.headers)
+			{
+				if (!HOP_BY_HOP_HEADERS.contains(header[0].toLowerCase(Locale.ROOT)))
+					head.append(header[0]).append(": ").append(header[1]).append("\r\n");
+			}
+			if (findHeader(this.headers, "Host") == null)
+				head.append("Host: 127.0.0.1\r\n");
+			if (this.body.length > 0 || this.method.equals("POST") || 
+					this.method.equals("PUT"))
+				head.append("Content-Length: ").append(this.body.length).append("\r\n");
+			head.append("Connection: keep-alive\r\n\r\n");
+			
+			return concatenate(head.toString().getBytes(StandardCharsets.ISO_8859_1), 
+					this.body);
+		}
+	}
+	
+	// A persistent connection to the REST server, used by one worker at a time
+	private static class BackendConnection
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final Socket socket;
+		private final InputStream input;
+		private final OutputStream output;
+		private long idleSince;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public BackendConnection(InetSocketAddress address) throws IOException
+		{
+			this.socket = new Socket();
+			this.socket.setTcpNoDelay(true);
+			this.socket.setSoTimeout(BACKEND_TIMEOUT_MILLIS);
+			this.socket.connect(address, BACKEND_TIMEOUT_MILLIS);
+			this.input = new BufferedInputStream(this.socket.getInputStream());
+			this.output = new BufferedOutputStream(this.socket.getOutputStream());
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public BackendResponse send(ClientRequest request) throws IOException
+		{
+			this.output.write(request.toBackendRequest());
+			this.output.flush();
+			
+			BackendResponse response = new BackendResponse();
+			String[] statusLine;
+			do
+			{
+				String line = readLine();
+				statusLine = line.split(" ", 3);
+				if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/1."))
+					throw new IOException("Malformed status line: " + line);
+				response.status = Integer.parseInt(statusLine[1]);
+				response.reason = statusLine.length > 2 ? statusLine[2] : "";
+				response.headers.clear();
+				
+				String headerLine;
+				while (!(headerLine = readLine()).isEmpty())
+				{
+					parseHeaderLine(headerLine, response.headers);
+				}
+			}
+			// The informational responses are skipped
+			while (response.status >= 100 && response.status < 200);
+			
+			if (statusLine[0].equals("HTTP/1.0"))
+				response.reusable = headerContains(response.headers, "Connection", 
+						"keep-alive");
+			else
+				response.reusable = !headerContains(response.headers, "Connection", "close");
+			
+			String length = findHeader(response.headers, "Content-Length");
+			if (request.method.equals("HEAD") || response.status == HttpStatus.SC_NO_CONTENT || 
+					response.status == HttpStatus.SC_NOT_MODIFIED)
+				response.body = new byte[0];
+			else if (headerContains(response.headers, "Transfer-Encoding", "chunked"))
+				response.body = readChunkedBody();
+			else if (length != null)
+				response.body = readBytes(Integer.parseInt(length.trim()));
+			else
+			{
+				// The body ends when the connection is closed
+				response.body = readToEnd();
+				response.reusable = false;
+			}
+			
+			return response;
+		}
+		
+		public void close()
+		{
+			try
+			{
+				this.socket.close();
+			}
+			catch (IOException e)
+			{
+				// The connection is not used anymore anyway
+			}
+		}
+		
+		private String readLine() throws IOException
+		{
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			while (true)
+			{
+				int b = this.input.read();
+				if (b < 0)
+					throw new EOFException("The REST server closed the connection");
+				if (b == '\n')
+					break;
+				if (b != '\r')
+					line.write(b);
+				if (line.size() > MAX_HEADER_BYTES)
+					throw new IOException("The response header is too long");
+			}
+			
+			return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+		}
+		
+		private byte[] readBytes(int amount) throws IOException
+		{
+			byte[] bytes = new byte[amount];
+			int read = 0;
+			while (read < amount)
+			{
+				int count = this.input.read(bytes, read, amount - read);
+				if (count < 0)
+					throw new EOFException("The REST server closed the connection");
+				read += count;
+			}
+			
+			return bytes;
+		}
+		
+		private byte[] readChunkedBody() throws IOException
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			while (true)
+			{
+				String sizeLine = readLine();
+				int extension = sizeLine.indexOf(';');
+				if (extension >= 0)
+					sizeLine = sizeLine.substring(0, extension);
+				int size = Integer.parseInt(sizeLine.trim(), 16);
+				if (size == 0)
+					break;
+				
+				body.write(readBytes(size));
+				readLine();
+			}
+			
+			// Skips the trailer
+			while (!readLine().isEmpty())
+			{
+				// The trailer headers are not passed on
+			}
+			
+			return body.toByteArray();
+		}
+		
+		private byte[] readToEnd() throws IOException
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int count;
+			while ((count = this.input.read(buffer)) >= 0)
+			{
+				body.write(buffer, 0, count);
+			}
+			
+			return body.toByteArray();
+		}
+	}
+	
+	private static class BackendResponse
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private int status;
+		private String reason;
+		private final List<String[]> headers = new ArrayList<>();
+		private byte[] body;
+		private boolean reusable;
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public byte[] toClientResponse(boolean keepAlive, boolean head)
+		{
+			StringBuilder s = new StringBuilder();
+			s.append("HTTP/1.1 ").append(this.status).append(" ").append(this.reason).append(
+					"\r\n");
+			for (String[] header : this.headers)
+			{
+				if (!HOP_BY_HOP_HEADERS.contains(header[0].toLowerCase(Locale.ROOT)))
+					s.append(header[0]).append(": ").append(header[1]).append("\r\n");
+			}
+			
+			// The response to a HEAD request tells the length of the body it would have had
+			String length = head ? findHeader(this.headers, "Content-Length") : null;
+			s.append("Content-Length: ").append(length == null ? 
+					String.valueOf(this.body.length) : length).append("\r\n");
+			s.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append(
+					"\r\n\r\n");
+			
+			return concatenate(s.toString().getBytes(StandardCharsets.ISO_8859_1), this.body);
+		}
+	}
+}
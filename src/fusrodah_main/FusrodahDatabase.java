@@ -0,0 +1,589 @@
+package fusrodah_main;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import vault_database.DatabaseTable;
+
+/**
+ * FusrodahDatabase provides direct database access for the operations that can't be done 
+ * one entity at a time, like batch updates. The other operations should still go through 
+ * the entities. The connections are lent from a connection pool.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class FusrodahDatabase
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final String TABLEAMOUNTS = "fusrodah_management_db.tableamounts";
+	
+	// How many physical tables each indexed table has, table names used as keys
+	private static final Map<String, Integer> tableAmounts = new HashMap<>();
+	// Increases each time a table amount is invalidated
+	private static long tableAmountChanges = 0;
+	// Only one physical table is added at a time
+	private static final Object tableCreationLock = new Object();
+	
+	/**
+	 * How many rows each physical table of an indexed table holds before a new table is 
+	 * started
+	 */
+	public static final int MAX_ROWS_PER_TABLE = 1000;
+	
+	/**
+	 * How many connections the pool holds when the size isn't specified
+	 */
+	public static final int DEFAULT_POOL_SIZE = 10;
+	private static final long MAX_CONNECTION_WAIT_MILLIS = 10 * 1000;
+	
+	private static volatile ConnectionPool pool = null;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private FusrodahDatabase()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Initializes the connection settings. This should be done before the database is used.
+	 * @param connectionTarget The address of the database server 
+	 * (Eg. jdbc:mysql://localhost:3306/)
+	 * @param user The database user
+	 * @param password The password of the database user
+	 */
+	public static void initialize(String connectionTarget, String user, String password)
+	{
+		initialize(connectionTarget, user, password, DEFAULT_POOL_SIZE);
+	}
+	
+	/**
+	 * Initializes the connection settings. This should be done before the database is used.
+	 * @param connectionTarget The address of the database server 
+	 * (Eg. jdbc:mysql://localhost:3306/)
+	 * @param user The database user
+	 * @param password The password of the database user
+	 * @param poolSize How many connections can be open at once
+	 */
+	public static void initialize(String connectionTarget, String user, String password, 
+			int poolSize)
+	{
+		ConnectionPool previous = pool;
+		pool = new ConnectionPool(connectionTarget, user, password, poolSize, 
+				MAX_CONNECTION_WAIT_MILLIS);
+		if (previous != null)
+			previous.close();
+	}
+	
+	/**
+	 * Lends a connection from the connection pool. The connection must be closed 
+	 * afterwards, which returns it to the pool.
+	 * @return A database connection
+	 * @throws SQLException If no connection could be provided
+	 */
+	public static Connection openConnection() throws SQLException
+	{
+		ConnectionPool currentPool = pool;
+		if (currentPool == null)
+			throw new SQLException("The database settings haven't been initialized");
+		
+		FusrodahMetrics.countDatabaseConnection();
+		return currentPool.getConnection();
+	}
+	
+	/**
+	 * Closes the idle connections of the pool. This should be done when the server shuts 
+	 * down.
+	 */
+	public static void close()
+	{
+		ConnectionPool currentPool = pool;
+		if (currentPool != null)
+			currentPool.close();
+	}
+	
+	/**
+	 * @return The state of the connection pool as attributes. Null if the database hasn't 
+	 * been initialized.
+	 */
+	public static Map<String, String> getPoolAttributes()
+	{
+		ConnectionPool currentPool = pool;
+		if (currentPool == null)
+			return null;
+		
+		return currentPool.toAttributes();
+	}
+	
+	/**
+	 * Reads the amount of physical tables for each indexed table. This should be done once 
+	 * when the server starts so that the first requests don't need to read them.
+	 * @throws SQLException If the table amounts couldn't be read
+	 */
+	public static void loadTableAmounts() throws SQLException
+	{
+		try (Connection connection = openConnection();
+				PreparedStatement statement = connection.prepareStatement(
+						"SELECT tableName, latestIndex FROM " + TABLEAMOUNTS);
+				ResultSet result = statement.executeQuery())
+		{
+			synchronized (tableAmounts)
+			{
+				tableAmounts.clear();
+				while (result.next())
+				{
+					tableAmounts.put(result.getString(1), Math.max(1, result.getInt(2)));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Informs that a new row was added to the table. New physical tables are created as 
+	 * the table fills, so the table amount is read again the next time it is needed.
+	 * @param table The table a row was added to
+	 */
+	public static void tableMayHaveGrown(DatabaseTable table)
+	{
+		synchronized (tableAmounts)
+		{
+			tableAmounts.remove(table.getTableName());
+			tableAmountChanges++;
+		}
+	}
+	
+	/**
+	 * Finds the names of the physical tables that hold the table's data. Indexed tables 
+	 * are split into multiple numbered tables.
+	 * @param connection The connection used for reading the table amount if it isn't 
+	 * known yet
+	 * @param table The table whose physical tables are searched
+	 * @return The names of the physical tables, including the database name
+	 * @throws SQLException If the table amount couldn't be read
+	 */
+	public static List<String> getTableNames(Connection connection, DatabaseTable table)
+			throws SQLException
+	{
+		List<String> tableNames = new ArrayList<>();
+		String baseName = table.getDatabaseName() + "." + table.getTableName();
+		
+		if (!table.usesIndexing())
+		{
+			tableNames.add(baseName);
+			return tableNames;
+		}
+		
+		Integer tableAmount;
+		long changesBeforeRead;
+		synchronized (tableAmounts)
+		{
+			tableAmount = tableAmounts.get(table.getTableName());
+			changesBeforeRead = tableAmountChanges;
+		}
+		
+		if (tableAmount == null)
+		{
+			tableAmount = 1;
+			try (PreparedStatement statement = connection.prepareStatement(
+					"SELECT latestIndex FROM " + TABLEAMOUNTS + " WHERE tableName = ?"))
+			{
+				statement.setString(1, table.getTableName());
+				try (ResultSet result = statement.executeQuery())
+				{
+					if (result.next())
+						tableAmount = Math.max(1, result.getInt(1));
+				}
+			}
+			
+			// The amount is not stored if a table may have been added during the read
+			synchronized (tableAmounts)
+			{
+				if (tableAmountChanges == changesBeforeRead)
+					tableAmounts.put(table.getTableName(), tableAmount);
+			}
+		}
+		
+		for (int i = 1; i <= tableAmount; i++)
+		{
+			tableNames.add(baseName + i);
+		}
+		
+		return tableNames;
+	}
+	
+	/**
+	 * Deletes the rows whose column value is one of the given values from each of the 
+	 * table's physical tables
+	 * @param connection The connection used for the deletion
+	 * @param table The table the rows are deleted from
+	 * @param columnName The name of the column the values are compared to
+	 * @param values The values of the deleted rows
+	 * @return How many rows were deleted
+	 * @throws SQLException If the deletion failed
+	 */
+	public static int deleteWhereIn(Connection connection, DatabaseTable table, 
+			String columnName, List<String> values) throws SQLException
+	{
+		if (values.isEmpty())
+			return 0;
+		
+		int deleted = 0;
+		for (String tableName : getTableNames(connection, table))
+		{
+			try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + 
+					tableName + " WHERE " + columnName + " IN (" + 
+					createPlaceholders(values.size()) + ")"))
+			{
+				for (int i = 0; i < values.size(); i++)
+				{
+					statement.setString(i + 1, values.get(i));
+				}
+				deleted += statement.executeUpdate();
+			}
+		}
+		
+		return deleted;
+	}
+	
+	/**
+	 * Reads the rows whose column value is one of the given values from each of the 
+	 * table's physical tables. Each physical table is read with a single query.
+	 * @param connection The connection used for reading the rows
+	 * @param table The table the rows are read from
+	 * @param columnName The name of the column the values are compared to
+	 * @param values The values of the read rows
+	 * @return The read rows. Each row contains every column of the table, column names 
+	 * used as keys.
+	 * @throws SQLException If the rows couldn't be read
+	 */
+	public static List<Map<String, String>> selectWhereIn(Connection connection, 
+			DatabaseTable table, String columnName, List<String> values) throws SQLException
+	{
+		List<Map<String, String>> rows = new ArrayList<>();
+		if (values.isEmpty())
+			return rows;
+		
+		for (String tableName : getTableNames(connection, table))
+		{
+			try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + 
+					tableName + " WHERE " + columnName + " IN (" + 
+					createPlaceholders(values.size()) + ")"))
+			{
+				for (int i = 0; i < values.size(); i++)
+				{
+					statement.setString(i + 1, values.get(i));
+				}
+				
+				try (ResultSet result = statement.executeQuery())
+				{
+					rows.addAll(readRows(result));
+				}
+			}
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * Reads the rows that fulfil all of the given conditions from each of the table's 
+	 * physical tables
+	 * @param connection The connection used for reading the rows
+	 * @param table The table the rows are read from
+	 * @param conditions The conditions the rows must fulfil, each with a single parameter 
+	 * placeholder (Eg. "created > ?"). The conditions must not contain client input.
+	 * @param conditionValues The values of the condition parameters, in the same order 
+	 * as the conditions
+	 * @return The read rows. Each row contains every column of the table, column names 
+	 * used as keys.
+	 * @throws SQLException If the rows couldn't be read
+	 */
+	public static List<Map<String, String>> selectWhere(Connection connection, 
+			DatabaseTable table, List<String> conditions, List<Object> conditionValues)
+			throws SQLException
+	{
+		List<Map<String, String>> rows = new ArrayList<>();
+		String where = createWhereClause(conditions);
+		
+		for (String tableName : getTableNames(connection, table))
+		{
+			try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + 
+					tableName + where))
+			{
+				int index = 1;
+				for (Object value : conditionValues)
+				{
+					statement.setObject(index++, value);
+				}
+				
+				try (ResultSet result = statement.executeQuery())
+				{
+					rows.addAll(readRows(result));
+				}
+			}
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * Reads a page of rows ordered by their identifiers. Only the rows after the given 
+	 * identifier are read, so the pages can be read one after another without going 
+	 * through the previous rows again.
+	 * @param connection The connection used for reading the rows
+	 * @param table The table the rows are read from
+	 * @param conditions The conditions the rows must fulfil, each with a single parameter 
+	 * placeholder (Eg. "senderID = ?"). The conditions must not contain client input.
+	 * @param conditionValues The values of the condition parameters, in the same order 
+	 * as the conditions
+	 * @param afterID The identifier after which the rows are read. Null if the rows are 
+	 * read from the beginning.
+	 * @param limit How many rows are read at most
+	 * @return The read rows in the order of their identifiers. Each row contains every 
+	 * column of the table, column names used as keys.
+	 * @throws SQLException If the rows couldn't be read
+	 */
+	public static List<Map<String, String>> selectPage(Connection connection, 
+			DatabaseTable table, List<String> conditions, List<Object> conditionValues, 
+			Long afterID, int limit) throws SQLException
+	{
+		String idColumn = table.getIDColumnName();
+		List<Map<String, String>> rows = new ArrayList<>();
+		
+		StringBuilder where = new StringBuilder(createWhereClause(conditions));
+		if (afterID != null)
+		{
+			where.append(where.length() == 0 ? " WHERE " : " AND ");
+			where.append(idColumn + " > ?");
+		}
+		
+		// Each physical table is read separately and the pages are combined afterwards
+		for (String tableName : getTableNames(connection, table))
+		{
+			try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + 
+					tableName + where + " ORDER BY " + idColumn + " LIMIT ?"))
+			{
+				int index = 1;
+				for (Object value : conditionValues)
+				{
+					statement.setObject(index++, value);
+				}
+				if (afterID != null)
+					statement.setLong(index++, afterID);
+				statement.setInt(index, limit);
+				
+				try (ResultSet result = statement.executeQuery())
+				{
+					rows.addAll(readRows(result));
+				}
+			}
+		}
+		
+		final String idKey = idColumn;
+		Collections.sort(rows, new Comparator<Map<String, String>>()
+		{
+			@Override
+			public int compare(Map<String, String> first, Map<String, String> second)
+			{
+				return Long.compare(Long.parseLong(first.get(idKey)), 
+						Long.parseLong(second.get(idKey)));
+			}
+		});
+		
+		if (rows.size() > limit)
+			return new ArrayList<>(rows.subList(0, limit));
+		return rows;
+	}
+	
+	/**
+	 * Inserts a row into the latest of the table's physical tables, possibly as a part of 
+	 * a larger transaction. Only the table's columns are written and the columns without 
+	 * a value are left null. The identifier is generated by the database if the table 
+	 * uses auto-increment indexing. When the latest table is full, the next table is 
+	 * created and the row is inserted there.
+	 * @param connection The connection used for the insert
+	 * @param table The table the row is inserted into
+	 * @param values The values of the row, column names used as keys
+	 * @return The identifier of the inserted row
+	 * @throws SQLException If the row couldn't be inserted
+	 */
+	public static String insert(Connection connection, DatabaseTable table, 
+			Map<String, String> values) throws SQLException
+	{
+		List<String> tableColumns = table.getColumnNames();
+		if (tableColumns == null)
+			throw new SQLException("The columns of " + table.getTableName() + 
+					" couldn't be read");
+		
+		String idColumn = table.getIDColumnName();
+		boolean generatesID = table.usesAutoIncrementIndexing();
+		List<String> columns = new ArrayList<>();
+		for (String column : tableColumns)
+		{
+			if (!generatesID || !column.equals(idColumn))
+				columns.add(column);
+		}
+		
+		String tableName = findInsertTableName(connection, table);
+		try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + 
+				tableName + " (" + String.join(", ", columns) + ") VALUES (" + 
+				createPlaceholders(columns.size()) + ")", Statement.RETURN_GENERATED_KEYS))
+		{
+			for (int i = 0; i < columns.size(); i++)
+			{
+				statement.setString(i + 1, values.get(columns.get(i)));
+			}
+			statement.executeUpdate();
+			
+			if (!generatesID)
+				return values.get(idColumn);
+			
+			try (ResultSet keys = statement.getGeneratedKeys())
+			{
+				if (!keys.next())
+					throw new SQLException("No identifier was generated for the new row");
+				return keys.getString(1);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a comma separated list of statement parameter placeholders
+	 * @param amount How many placeholders there are
+	 * @return The placeholders (Eg. "?, ?, ?")
+	 */
+	public static String createPlaceholders(int amount)
+	{
+		StringBuilder placeholders = new StringBuilder();
+		for (int i = 0; i < amount; i++)
+		{
+			if (i > 0)
+				placeholders.append(", ");
+			placeholders.append("?");
+		}
+		
+		return placeholders.toString();
+	}
+	
+	private static String findInsertTableName(Connection connection, DatabaseTable table)
+			throws SQLException
+	{
+		List<String> tableNames = getTableNames(connection, table);
+		String latestTableName = tableNames.get(tableNames.size() - 1);
+		if (!table.usesIndexing() || countRows(connection, latestTableName) < 
+				MAX_ROWS_PER_TABLE)
+			return latestTableName;
+		
+		// The table is created with a separate connection since creating a table commits
+		// the current transaction
+		synchronized (tableCreationLock)
+		{
+			try (Connection creationConnection = openConnection())
+			{
+				// Another thread may have added the table already
+				tableNames = getTableNames(creationConnection, table);
+				latestTableName = tableNames.get(tableNames.size() - 1);
+				if (countRows(creationConnection, latestTableName) < MAX_ROWS_PER_TABLE)
+					return latestTableName;
+				
+				String newTableName = table.getDatabaseName() + "." + table.getTableName() + 
+						(tableNames.size() + 1);
+				createNextTable(creationConnection, table, latestTableName, newTableName, 
+						tableNames.size() + 1);
+				tableMayHaveGrown(table);
+				
+				return newTableName;
+			}
+		}
+	}
+	
+	private static void createNextTable(Connection connection, DatabaseTable table, 
+			String latestTableName, String newTableName, int newIndex) throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + newTableName + 
+					" LIKE " + latestTableName);
+			
+			// The identifiers continue from the previous table so that they stay unique
+			if (table.usesAutoIncrementIndexing())
+			{
+				long nextID = 1;
+				try (ResultSet result = statement.executeQuery("SELECT MAX(" + 
+						table.getIDColumnName() + ") FROM " + latestTableName))
+				{
+					if (result.next())
+						nextID = result.getLong(1) + 1;
+				}
+				statement.executeUpdate("ALTER TABLE " + newTableName + 
+						" AUTO_INCREMENT = " + nextID);
+			}
+		}
+		
+		try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + 
+				TABLEAMOUNTS + " (tableName, latestIndex) VALUES (?, ?) ON DUPLICATE KEY " + 
+				"UPDATE latestIndex = GREATEST(latestIndex, VALUES(latestIndex))"))
+		{
+			statement.setString(1, table.getTableName());
+			statement.setInt(2, newIndex);
+			statement.executeUpdate();
+		}
+	}
+	
+	private static int countRows(Connection connection, String tableName)
+			throws SQLException
+	{
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT COUNT(*) FROM " + tableName);
+				ResultSet result = statement.executeQuery())
+		{
+			if (!result.next())
+				return 0;
+			return result.getInt(1);
+		}
+	}
+	
+	private static String createWhereClause(List<String> conditions)
+	{
+		StringBuilder where = new StringBuilder();
+		for (String condition : conditions)
+		{
+			where.append(where.length() == 0 ? " WHERE " : " AND ");
+			where.append(condition);
+		}
+		
+		return where.toString();
+	}
+	
+	private static List<Map<String, String>> readRows(ResultSet result) throws SQLException
+	{
+		List<Map<String, String>> rows = new ArrayList<>();
+		ResultSetMetaData metaData = result.getMetaData();
+		while (result.next())
+		{
+			Map<String, String> row = new HashMap<>();
+			for (int i = 1; i <= metaData.getColumnCount(); i++)
+			{
+				row.put(metaData.getColumnLabel(i), result.getString(i));
+			}
+			rows.add(row);
+		}
+		
+		return rows;
+	}
+}
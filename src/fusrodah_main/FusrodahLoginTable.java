@@ -1,6 +1,8 @@
 package fusrodah_main;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -25,7 +27,13 @@ public enum FusrodahLoginTable implements LoginKeyTable
 	
 	// ATTRIBUTES	----------------------------------
 	
-	private static List<String> columnNames = null;
+	/**
+	 * How long the login keys stay valid. In hours.
+	 */
+	public static final int KEY_DURATION_HOURS = 22;
+	
+	// The column names never change once they have been read
+	private static volatile List<String> columnNames = null;
 	
 	
 	// IMPLEMENTED METHODS	--------------------------
@@ -39,11 +47,12 @@ public enum FusrodahLoginTable implements LoginKeyTable
 	@Override
 	public List<String> getColumnNames()
 	{
+		// The column names are normally read when the server starts
 		if (columnNames == null)
 		{
 			try
 			{
-				columnNames = DatabaseTable.readColumnNamesFromDatabase(this);
+				loadColumnNames();
 			}
 			catch (DatabaseUnavailableException | SQLException e)
 			{
@@ -101,7 +110,23 @@ public enum FusrodahLoginTable implements LoginKeyTable
 	// OTHER METHODS	-----------------------
 	
 	/**
-	 * Checks if the given key is correct
+	 * Reads the column names of the login keys table from the database. This should be 
+	 * done once when the server starts, before the table is used. Nothing is read if the 
+	 * column names have already been read.
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws SQLException If the column names couldn't be read
+	 */
+	public static synchronized void loadColumnNames() throws DatabaseUnavailableException, 
+			SQLException
+	{
+		if (columnNames == null)
+			columnNames = Collections.unmodifiableList(new ArrayList<>(
+					DatabaseTable.readColumnNamesFromDatabase(LOGINKEYS)));
+	}
+	
+	/**
+	 * Checks if the given key is correct. Keys that were recently found valid are not 
+	 * checked from the database again.
 	 * @param userID The identifier of the user
 	 * @param parameters The parameters provided by the client
 	 * @throws HttpException If the given key was incorrect or couldn't be validated
@@ -109,6 +134,12 @@ public enum FusrodahLoginTable implements LoginKeyTable
 	public static void checkUserKey(String userID, Map<String, String> parameters) throws 
 			HttpException
 	{
+		long nowMillis = System.currentTimeMillis();
+		String key = parameters.get("userKey");
+		if (LoginKeyCache.contains(userID, key, nowMillis))
+			return;
+		
 		LoginKey.checkKey(LOGINKEYS, userID, parameters);
+		LoginKeyCache.add(userID, key, nowMillis);
 	}
 }
@@ -0,0 +1,316 @@
+package fusrodah_main;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * FusrodahMetrics collects the response times of the server's endpoints and the durations 
+ * of the maintenance tasks. For each request, the entity loads, entity writes and direct 
+ * database connections are counted as well, which makes it easy to spot requests that 
+ * read the database more often than they should.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class FusrodahMetrics
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final Map<String, EndpointMetrics> endpoints = new TreeMap<>();
+	private static final Map<String, TaskMetrics> tasks = new TreeMap<>();
+	private static final ThreadLocal<RequestCounters> requestCounters = 
+			new ThreadLocal<RequestCounters>()
+	{
+		@Override
+		protected RequestCounters initialValue()
+		{
+			return new RequestCounters();
+		}
+	};
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private FusrodahMetrics()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Starts measuring a request. Each call must be followed by a call to 
+	 * {@link #endRequest(String, String, long)}. If a request is already being measured in 
+	 * this thread, the inner request is counted as part of it.
+	 * @return The moment the request started, in nanoseconds
+	 */
+	public static long startRequest()
+	{
+		RequestCounters counters = requestCounters.get();
+		if (counters.depth == 0)
+			counters.reset();
+		counters.depth++;
+		
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Finishes measuring a request
+	 * @param name The name of the measured endpoint (Eg. "post_shouts")
+	 * @param endpoint The method and path of the endpoint (Eg. "POST root/shouts")
+	 * @param startNanos The value returned by {@link #startRequest()}
+	 */
+	public static void endRequest(String name, String endpoint, long startNanos)
+	{
+		long duration = System.nanoTime() - startNanos;
+		RequestCounters counters = requestCounters.get();
+		counters.depth--;
+		if (counters.depth > 0)
+			return;
+		
+		EndpointMetrics metrics;
+		synchronized (endpoints)
+		{
+			metrics = endpoints.get(name);
+			if (metrics == null)
+			{
+				metrics = new EndpointMetrics(endpoint);
+				endpoints.put(name, metrics);
+			}
+		}
+		metrics.record(duration, counters);
+	}
+	
+	/**
+	 * Records the duration of a maintenance task run
+	 * @param taskName The name of the task
+	 * @param startNanos The moment the task started, in nanoseconds
+	 */
+	public static void recordTaskRun(String taskName, long startNanos)
+	{
+		getTaskMetrics(taskName).record(System.nanoTime() - startNanos, -1);
+	}
+	
+	/**
+	 * Records the duration of a maintenance task run along with the amount of rows the 
+	 * run processed. The processing rate is reported for the latest run and on average.
+	 * @param taskName The name of the task
+	 * @param startNanos The moment the task started, in nanoseconds
+	 * @param processedRows How many rows the run read, wrote or deleted
+	 */
+	public static void recordTaskRun(String taskName, long startNanos, long processedRows)
+	{
+		getTaskMetrics(taskName).record(System.nanoTime() - startNanos, processedRows);
+	}
+	
+	/**
+	 * Counts an entity read from the database for the current request
+	 */
+	public static void countEntityLoad()
+	{
+		requestCounters.get().entityLoads++;
+	}
+	
+	/**
+	 * Counts an entity write to the database for the current request
+	 */
+	public static void countEntityWrite()
+	{
+		requestCounters.get().entityWrites++;
+	}
+	
+	/**
+	 * Counts a direct database connection for the current request
+	 */
+	public static void countDatabaseConnection()
+	{
+		requestCounters.get().databaseConnections++;
+	}
+	
+	/**
+	 * @return The current metrics. The keys are the names of the endpoints and the tasks 
+	 * and the values are their metrics as attributes.
+	 */
+	public static Map<String, Map<String, String>> getMetrics()
+	{
+		Map<String, Map<String, String>> metrics = new TreeMap<>();
+		
+		synchronized (endpoints)
+		{
+			for (Map.Entry<String, EndpointMetrics> endpoint : endpoints.entrySet())
+			{
+				metrics.put(endpoint.getKey(), endpoint.getValue().toAttributes());
+			}
+		}
+		synchronized (tasks)
+		{
+			for (Map.Entry<String, TaskMetrics> task : tasks.entrySet())
+			{
+				Map<String, String> attributes = task.getValue().toAttributes();
+				attributes.put("task", task.getKey());
+				metrics.put("task_" + task.getKey(), attributes);
+			}
+		}
+		
+		Map<String, String> poolAttributes = FusrodahDatabase.getPoolAttributes();
+		if (poolAttributes != null)
+			metrics.put("connection_pool", poolAttributes);
+		
+		Map<String, String> limiterAttributes = RequestLimiter.getAttributes();
+		if (limiterAttributes != null)
+			metrics.put("request_limiter", limiterAttributes);
+		
+		return metrics;
+	}
+	
+	/**
+	 * Writes the current metrics into a file, one endpoint or task per line
+	 * @param fileName The name of the file. An existing file is overwritten.
+	 * @throws FileNotFoundException If the file couldn't be opened
+	 */
+	public static void writeToFile(String fileName) throws FileNotFoundException
+	{
+		try (PrintWriter writer = new PrintWriter(fileName))
+		{
+			for (Map.Entry<String, Map<String, String>> metric : getMetrics().entrySet())
+			{
+				StringBuilder line = new StringBuilder(metric.getKey());
+				for (Map.Entry<String, String> attribute : 
+						new TreeMap<>(metric.getValue()).entrySet())
+				{
+					line.append("\t").append(attribute.getKey()).append("=").append(
+							attribute.getValue());
+				}
+				writer.println(line);
+			}
+		}
+	}
+	
+	
+	private static TaskMetrics getTaskMetrics(String taskName)
+	{
+		synchronized (tasks)
+		{
+			TaskMetrics metrics = tasks.get(taskName);
+			if (metrics == null)
+			{
+				metrics = new TaskMetrics();
+				tasks.put(taskName, metrics);
+			}
+			
+			return metrics;
+		}
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class RequestCounters
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private int depth, entityLoads, entityWrites, databaseConnections;
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public void reset()
+		{
+			this.entityLoads = 0;
+			this.entityWrites = 0;
+			this.databaseConnections = 0;
+		}
+	}
+	
+	private static class EndpointMetrics
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final String endpoint;
+		private final LatencyHistogram latencies;
+		private long entityLoads, entityWrites, databaseConnections;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public EndpointMetrics(String endpoint)
+		{
+			this.endpoint = endpoint;
+			this.latencies = new LatencyHistogram();
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public synchronized void record(long nanos, RequestCounters counters)
+		{
+			this.latencies.record(nanos);
+			this.entityLoads += counters.entityLoads;
+			this.entityWrites += counters.entityWrites;
+			this.databaseConnections += counters.databaseConnections;
+		}
+		
+		public synchronized Map<String, String> toAttributes()
+		{
+			Map<String, String> attributes = this.latencies.toAttributes();
+			double requests = Math.max(1, this.latencies.getCount());
+			
+			attributes.put("endpoint", this.endpoint);
+			attributes.put("entityLoadsPerRequest", String.valueOf(this.entityLoads / 
+					requests));
+			attributes.put("entityWritesPerRequest", String.valueOf(this.entityWrites / 
+					requests));
+			attributes.put("databaseConnectionsPerRequest", String.valueOf(
+					this.databaseConnections / requests));
+			
+			return attributes;
+		}
+	}
+	
+	private static class TaskMetrics
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final LatencyHistogram durations = new LatencyHistogram();
+		private long rows, rowNanos, lastRows;
+		private double lastRowsPerSecond;
+		private boolean countsRows;
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public synchronized void record(long nanos, long processedRows)
+		{
+			this.durations.record(nanos);
+			
+			// Negative when the task doesn't process rows
+			if (processedRows < 0)
+				return;
+			
+			this.countsRows = true;
+			this.rows += processedRows;
+			this.rowNanos += nanos;
+			this.lastRows = processedRows;
+			this.lastRowsPerSecond = processedRows / Math.max(nanos / 1000000000.0, 0.000001);
+		}
+		
+		public synchronized Map<String, String> toAttributes()
+		{
+			Map<String, String> attributes = this.durations.toAttributes();
+			if (this.countsRows)
+			{
+				attributes.put("rows", String.valueOf(this.rows));
+				attributes.put("rowsPerSecond", String.valueOf(this.rows / 
+						Math.max(this.rowNanos / 1000000000.0, 0.000001)));
+				attributes.put("lastRunRows", String.valueOf(this.lastRows));
+				attributes.put("lastRunRowsPerSecond", String.valueOf(
+						this.lastRowsPerSecond));
+			}
+			
+			return attributes;
+		}
+	}
+}
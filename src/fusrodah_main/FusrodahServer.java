@@ -1,17 +1,22 @@
 package fusrodah_main;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
 import alliance_authorization.LoginKeyRemovalTask;
-import alliance_util.MaintenanceTask;
 import alliance_util.MaintenanceTimer;
 import alliance_util.SimpleDate;
 import fusrodah_rest.FusRoDahLoginManagerEntity;
+import fusrodah_rest.LiveShoutStore;
+import fusrodah_rest.MetricsListEntity;
 import fusrodah_rest.ShoutListEntity;
 import fusrodah_rest.TemplateListEntity;
+import fusrodah_rest.UserCache;
 import fusrodah_rest.UsersListEntity;
+import fusrodah_rest.VictoryIndex;
+import nexus_http.HttpException;
 import nexus_rest.ContentType;
 import nexus_rest.ImmutableRestEntity;
 import nexus_rest.RestEntity;
@@ -42,14 +47,24 @@ public class FusrodahServer
 	 * Starts the server
 	 * @param args The first parameter is the server ip. The second parameter is the port 
 	 * number. The third parameter is the database password. The fourth one is database user 
-	 * (default = root). The fifth is database address (default = jdbc:mysql://localhost:3306/)
+	 * (default = root). The fifth is database address (default = jdbc:mysql://localhost:3306/). 
+	 * The sixth is the file the metrics are written into every ten minutes (optional, 
+	 * use - to skip). The seventh is the size of the database connection pool 
+	 * (default = 10). The eighth is how many requests the front end passes on at once, 
+	 * the rest wait for their turn (default = 0, which doesn't limit the requests). The 
+	 * ninth is the amount of worker threads in the non-blocking front end (default = 0, 
+	 * which serves the clients with the blocking server only, without a request limit). The tenth is the local port of the 
+	 * blocking server when the front end is used (default = port + 1).
 	 */
 	public static void main(String[] args)
 	{
 		if (args.length < 3)
 		{
 			System.out.println("Please provide the correct parameters (ip, port, "
-					+ "password, user (optional), database address (optional))");
+					+ "password, user (optional), database address (optional), "
+					+ "metrics file (optional), connection pool size (optional), "
+					+ "concurrent request limit (optional), front end worker threads "
+					+ "(optional), internal port (optional))");
 			System.exit(0);
 		}
 		
@@ -65,7 +80,8 @@ public class FusrodahServer
 		// Initializes database settings
 		try
 		{
-			DatabaseSettings.initialize(connectionTarget, user, args[2], 1000, 
+			DatabaseSettings.initialize(connectionTarget, user, args[2], 
+					FusrodahDatabase.MAX_ROWS_PER_TABLE, 
 					"fusrodah_management_db", "tableamounts");
 		}
 		catch (DatabaseUnavailableException | SQLException e)
@@ -74,6 +90,40 @@ public class FusrodahServer
 			e.printStackTrace();
 			System.exit(1);
 		}
+		int poolSize = FusrodahDatabase.DEFAULT_POOL_SIZE;
+		if (args.length >= 7)
+			poolSize = Integer.parseInt(args[6]);
+		FusrodahDatabase.initialize(connectionTarget, user, args[2], poolSize);
+		if (args.length >= 8)
+			RequestLimiter.initialize(Integer.parseInt(args[7]), 
+					RequestLimiter.DEFAULT_MAX_WAIT_MILLIS);
+		
+		// Reads the table information before the first requests arrive
+		try
+		{
+			FusrodahTable.loadColumnNames();
+			FusrodahLoginTable.loadColumnNames();
+			FusrodahDatabase.loadTableAmounts();
+		}
+		catch (DatabaseUnavailableException | SQLException e)
+		{
+			System.err.println("Couldn't read the table information");
+			e.printStackTrace();
+			System.exit(1);
+		}
+		
+		// Reads the shouts that are still live and indexes the victories
+		try
+		{
+			LiveShoutStore.initialize();
+			VictoryIndex.initialize();
+		}
+		catch (HttpException e)
+		{
+			System.err.println("Couldn't read the live shouts or the victories");
+			e.printStackTrace();
+			System.exit(1);
+		}
 		
 		// Creates the server entities
 		Map<String, String> serverAttributes = new HashMap<>();
@@ -87,16 +137,64 @@ public class FusrodahServer
 		new ShoutListEntity(root);
 		new TemplateListEntity(root);
 		new UsersListEntity(root);
+		new MetricsListEntity(root);
 		
 		// Starts the maintenance tasks
 		MaintenanceTimer maintenance = new MaintenanceTimer();
 		maintenance.addTask(new TemplateRemovalTask(), 2);
-		maintenance.addTask(new VictoryRemovalTask(), 
-				MaintenanceTask.getMinutesTillMidnight() + 2 * 60);
-		maintenance.addTask(new LoginKeyRemovalTask(FusrodahLoginTable.LOGINKEYS, 22));
+		maintenance.addTask(new VictoryRemovalTask(), 3);
+		maintenance.addTask(new LoginKeyRemovalTask(FusrodahLoginTable.LOGINKEYS, 
+				FusrodahLoginTable.KEY_DURATION_HOURS));
+		maintenance.addTask(new UserCacheFlushTask(), 1);
+		if (args.length >= 6 && !args[5].equals("-"))
+			maintenance.addTask(new MetricsDumpTask(args[5]));
+		
+		// The cached user changes are written before the server shuts down
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					UserCache.flush();
+				}
+				catch (HttpException e)
+				{
+					System.err.println("Failed to write the user changes");
+					e.printStackTrace();
+				}
+				FusrodahDatabase.close();
+			}
+		});
+		
+		// Without the front end, the clients connect to the blocking server directly
+		int frontEndWorkers = 0;
+		if (args.length >= 9)
+			frontEndWorkers = Integer.parseInt(args[8]);
+		if (frontEndWorkers <= 0)
+		{
+			StaticRestServer.startServer(args[0], port, true, ContentType.XML, root, 
+					new HttpServerAnalyzer());
+			return;
+		}
 		
-		// Starts the server
-		StaticRestServer.startServer(args[0], port, true, ContentType.XML, root, 
+		// Otherwise the front end accepts the connections and the blocking server only
+		// listens to the local port
+		int internalPort = port + 1;
+		if (args.length >= 10)
+			internalPort = Integer.parseInt(args[9]);
+		try
+		{
+			new FrontEndServer(args[0], port, internalPort, frontEndWorkers).start();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Couldn't start the front end");
+			e.printStackTrace();
+			System.exit(1);
+		}
+		StaticRestServer.startServer("127.0.0.1", internalPort, true, ContentType.XML, root, 
 				new HttpServerAnalyzer());
 	}
 }
@@ -1,7 +1,9 @@
 package fusrodah_main;
 
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,7 +43,8 @@ public enum FusrodahTable implements DatabaseEntityTable
 	
 	// ATTRIBUTES	---------------------------
 	
-	private static Map<DatabaseTable, List<String>> columnNames = null;
+	// The column names never change once they have been read
+	private static volatile Map<FusrodahTable, List<String>> columnNames = null;
 	
 	
 	// IMPLEMENTED METHODS	-------------------
@@ -49,18 +52,19 @@ public enum FusrodahTable implements DatabaseEntityTable
 	@Override
 	public List<String> getColumnNames()
 	{
-		try
+		// The column names are normally read when the server starts
+		if (columnNames == null)
 		{
-			if (columnNames == null)
-				columnNames = new HashMap<>();
-			
-			if (!columnNames.containsKey(this))
-				columnNames.put(this, DatabaseTable.readColumnNamesFromDatabase(this));
-		}
-		catch (DatabaseUnavailableException | SQLException e)
-		{
-			System.err.println("Failed to read the column names");
-			e.printStackTrace();
+			try
+			{
+				loadColumnNames();
+			}
+			catch (DatabaseUnavailableException | SQLException e)
+			{
+				System.err.println("Failed to read the column names");
+				e.printStackTrace();
+				return null;
+			}
 		}
 		
 		return columnNames.get(this);
@@ -98,4 +102,30 @@ public enum FusrodahTable implements DatabaseEntityTable
 	{	
 		return "id";
 	}
+	
+	
+	// OTHER METHODS	-----------------------
+	
+	/**
+	 * Reads the column names of each table from the database. This should be done once 
+	 * when the server starts, before the tables are used. Nothing is read if the column 
+	 * names have already been read.
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws SQLException If the column names couldn't be read
+	 */
+	public static synchronized void loadColumnNames() throws DatabaseUnavailableException, 
+			SQLException
+	{
+		if (columnNames != null)
+			return;
+		
+		Map<FusrodahTable, List<String>> names = new EnumMap<>(FusrodahTable.class);
+		for (FusrodahTable table : values())
+		{
+			names.put(table, Collections.unmodifiableList(new ArrayList<>(
+					DatabaseTable.readColumnNamesFromDatabase(table))));
+		}
+		
+		columnNames = Collections.unmodifiableMap(names);
+	}
 }
@@ -0,0 +1,125 @@
+package fusrodah_main;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LatencyHistogram collects durations into a fixed set of buckets. The percentiles are 
+ * estimated from the buckets so recording a duration never allocates memory.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class LatencyHistogram
+{
+	// ATTRIBUTES	-----------------------------
+	
+	// The upper bounds of the buckets. The last bucket has no upper bound.
+	private static final long[] BUCKET_LIMITS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 
+			1000, 2000, 5000, 10000};
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	
+	private final long[] bucketCounts;
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new empty histogram
+	 */
+	public LatencyHistogram()
+	{
+		this.bucketCounts = new long[BUCKET_LIMITS_MILLIS.length + 1];
+		this.count = 0;
+		this.totalNanos = 0;
+		this.maxNanos = 0;
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Records a single duration
+	 * @param nanos The duration in nanoseconds
+	 */
+	public synchronized void record(long nanos)
+	{
+		int bucket = 0;
+		while (bucket < BUCKET_LIMITS_MILLIS.length && 
+				nanos > BUCKET_LIMITS_MILLIS[bucket] * NANOS_PER_MILLI)
+		{
+			bucket++;
+		}
+		
+		this.bucketCounts[bucket]++;
+		this.count++;
+		this.totalNanos += nanos;
+		this.maxNanos = Math.max(this.maxNanos, nanos);
+	}
+	
+	/**
+	 * @return How many durations have been recorded
+	 */
+	public synchronized long getCount()
+	{
+		return this.count;
+	}
+	
+	/**
+	 * Estimates a percentile of the recorded durations
+	 * @param percentile The percentile (0-100)
+	 * @return The upper bound of the bucket that contains the percentile in milliseconds. 
+	 * The longest recorded duration is used for the last bucket. 0 if nothing has been 
+	 * recorded.
+	 */
+	public synchronized double getPercentileMillis(double percentile)
+	{
+		if (this.count == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(percentile / 100 * this.count);
+		long passed = 0;
+		for (int i = 0; i < BUCKET_LIMITS_MILLIS.length; i++)
+		{
+			passed += this.bucketCounts[i];
+			if (passed >= rank)
+				return Math.min(BUCKET_LIMITS_MILLIS[i], this.maxNanos / NANOS_PER_MILLI);
+		}
+		
+		return this.maxNanos / NANOS_PER_MILLI;
+	}
+	
+	/**
+	 * @return The histogram's state as attributes. Includes the count, mean, maximum, 
+	 * median and 99th percentile, as well as the bucket counts.
+	 */
+	public synchronized Map<String, String> toAttributes()
+	{
+		Map<String, String> attributes = new HashMap<>();
+		
+		attributes.put("count", String.valueOf(this.count));
+		attributes.put("meanMillis", String.valueOf(this.count == 0 ? 0 : 
+				this.totalNanos / NANOS_PER_MILLI / this.count));
+		attributes.put("maxMillis", String.valueOf(this.maxNanos / NANOS_PER_MILLI));
+		attributes.put("p50Millis", String.valueOf(getPercentileMillis(50)));
+		attributes.put("p99Millis", String.valueOf(getPercentileMillis(99)));
+		
+		StringBuilder buckets = new StringBuilder();
+		for (int i = 0; i < this.bucketCounts.length; i++)
+		{
+			if (i > 0)
+				buckets.append(" ");
+			if (i < BUCKET_LIMITS_MILLIS.length)
+				buckets.append("<=").append(BUCKET_LIMITS_MILLIS[i]).append("ms:");
+			else
+				buckets.append(">").append(BUCKET_LIMITS_MILLIS[i - 1]).append("ms:");
+			buckets.append(this.bucketCounts[i]);
+		}
+		attributes.put("histogram", buckets.toString());
+		
+		return attributes;
+	}
+}
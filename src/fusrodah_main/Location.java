@@ -1,11 +1,12 @@
 package fusrodah_main;
 
 import flow_recording.ObjectFormatException;
-import genesis_util.HelpMath;
 import genesis_util.Vector3D;
 
 /**
- * Location represents a location in the real world. The location is immutable once created.
+ * Location represents a location in the real world. The location is immutable once created. 
+ * The radian coordinates and their sines and cosines are calculated when the location is 
+ * created so that the distance calculations don't need to create any objects.
  * 
  * @author Mikko Hilpinen
  * @since 1.3.2015
@@ -14,9 +15,15 @@ public class Location
 {
 	// ATTRIBUTES	-----------------------------
 	
-	private final Vector3D latLong;
-	
 	private static final int EARTH_RADIUS = 6371000; // metres
+	// The powers of ten that can be represented exactly
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 
+			1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 
+			1e22};
+	
+	private final double latitude, longitude;
+	// The coordinates are mirrored, as they have always been in the calculations
+	private final double latitudeRads, longitudeRads, sinLatitude, cosLatitude;
 	
 	
 	// CONSTRUCTOR	-----------------------------
@@ -28,25 +35,29 @@ public class Location
 	 */
 	public Location(String s)
 	{
-		if (s == null)
-			throw new ObjectFormatException("Location cannot be null");
-		
-		String[] parts = s.split(";");
-		
-		if (parts.length < 2)
-			throw new ObjectFormatException("Can't parse a location from " + s);
+		this(s, findSeparator(s, 0, true));
+	}
+	
+	private Location(String s, int separator)
+	{
+		this(parseCoordinate(s, 0, separator), parseCoordinate(s, separator + 1, 
+				findSeparator(s, separator + 1, false)));
+	}
+	
+	/**
+	 * Creates a new location
+	 * @param latitude The latitude coordinate of the location
+	 * @param longitude The longitude coordinate of the location
+	 */
+	public Location(double latitude, double longitude)
+	{
+		this.latitude = latitude;
+		this.longitude = longitude;
 		
-		try
-		{
-			double latitude = Double.parseDouble(parts[0]);
-			double longitude = Double.parseDouble(parts[1]);
-			
-			this.latLong = new Vector3D(latitude, longitude);
-		}
-		catch (NumberFormatException e)
-		{
-			throw new ObjectFormatException("Location data must be in double format");
-		}
+		this.latitudeRads = Math.toRadians(-latitude);
+		this.longitudeRads = Math.toRadians(-longitude);
+		this.sinLatitude = Math.sin(this.latitudeRads);
+		this.cosLatitude = Math.cos(this.latitudeRads);
 	}
 	
 	/**
@@ -55,7 +66,7 @@ public class Location
 	 */
 	public Location(Vector3D latitudeLongitude)
 	{
-		this.latLong = latitudeLongitude;
+		this(latitudeLongitude.getFirst(), latitudeLongitude.getSecond());
 	}
 	
 	
@@ -75,7 +86,7 @@ public class Location
 	 */
 	public Vector3D getCoordinates()
 	{
-		return this.latLong;
+		return new Vector3D(this.latitude, this.longitude);
 	}
 	
 	/**
@@ -83,7 +94,7 @@ public class Location
 	 */
 	public double getLatitude()
 	{
-		return getCoordinates().getFirst();
+		return this.latitude;
 	}
 	
 	/**
@@ -91,7 +102,33 @@ public class Location
 	 */
 	public double getLongitude()
 	{
-		return getCoordinates().getSecond();
+		return this.longitude;
+	}
+	
+	/**
+	 * @return The latitude of this location in the radian format used in the distance 
+	 * calculations
+	 */
+	public double getLatitudeRadians()
+	{
+		return this.latitudeRads;
+	}
+	
+	/**
+	 * @return The longitude of this location in the radian format used in the distance 
+	 * calculations
+	 */
+	public double getLongitudeRadians()
+	{
+		return this.longitudeRads;
+	}
+	
+	/**
+	 * @return The cosine of this location's latitude
+	 */
+	public double getCosLatitude()
+	{
+		return this.cosLatitude;
 	}
 	
 	
@@ -113,16 +150,11 @@ public class Location
 			var brng = Math.atan2(y, x).toDegrees();
 		 */
 		
-		Vector3D radianCoordinates1 = getRadianCoordinates();
-		Vector3D radianCoordinates2 = other.getRadianCoordinates();
+		double deltaLongitudeRads = other.longitudeRads - this.longitudeRads;
 		
-		double y = Math.sin(radianCoordinates2.getSecond() - radianCoordinates1.getSecond()) * 
-				Math.cos(radianCoordinates2.getFirst());
-		double x = Math.cos(radianCoordinates1.getFirst()) * 
-				Math.sin(radianCoordinates2.getFirst()) - 
-				Math.sin(radianCoordinates1.getFirst()) * 
-				Math.cos(radianCoordinates2.getFirst() * 
-				Math.cos(radianCoordinates2.getSecond() - radianCoordinates1.getSecond()));
+		double y = Math.sin(deltaLongitudeRads) * other.cosLatitude;
+		double x = this.cosLatitude * other.sinLatitude - 
+				this.sinLatitude * other.cosLatitude * Math.cos(deltaLongitudeRads);
 		
 		return Math.toDegrees(Math.atan2(y, x));//HelpMath.getVectorDirection(x, y);
 	}
@@ -150,26 +182,163 @@ public class Location
 			var d = R * c;
 		 */
 		
-		double latRads1 = getRadianCoordinates().getFirst();
-		double latRads2 = other.getRadianCoordinates().getFirst();
+		return toDistance(haversine(other.latitudeRads, other.cosLatitude, 
+				other.longitudeRads));
+	}
+	
+	/**
+	 * Checks whether the other location is closer than the given distance. This is faster 
+	 * than calculating the distance itself.
+	 * @param other The other location
+	 * @param radius The maximum distance (metres)
+	 * @return Is the other location closer to this one than the radius
+	 */
+	public boolean isWithin(Location other, double radius)
+	{
+		return haversine(other.latitudeRads, other.cosLatitude, other.longitudeRads) < 
+				getHaversineLimit(radius);
+	}
+	
+	/**
+	 * Calculates the distances from this location to multiple locations at once. The 
+	 * locations are given as arrays so that no objects are created during the calculation.
+	 * @param latitudeRads The latitudes of the locations (see {@link #getLatitudeRadians()})
+	 * @param cosLatitudes The cosines of the latitudes (see {@link #getCosLatitude()})
+	 * @param longitudeRads The longitudes of the locations 
+	 * (see {@link #getLongitudeRadians()})
+	 * @param count How many locations there are in the arrays
+	 * @param distances The array the distances are written into
+	 */
+	public void calculateDistances(double[] latitudeRads, double[] cosLatitudes, 
+			double[] longitudeRads, int count, double[] distances)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			distances[i] = toDistance(haversine(latitudeRads[i], cosLatitudes[i], 
+					longitudeRads[i]));
+		}
+	}
+	
+	/**
+	 * Finds the locations that are closer than the given distance from this location. The 
+	 * locations are given as arrays so that no objects are created during the search.
+	 * @param latitudeRads The latitudes of the locations (see {@link #getLatitudeRadians()})
+	 * @param cosLatitudes The cosines of the latitudes (see {@link #getCosLatitude()})
+	 * @param longitudeRads The longitudes of the locations 
+	 * (see {@link #getLongitudeRadians()})
+	 * @param count How many locations there are in the arrays
+	 * @param radius The maximum distance (metres)
+	 * @param foundIndices The array the indices of the found locations are written into
+	 * @return How many locations were found
+	 */
+	public int findWithin(double[] latitudeRads, double[] cosLatitudes, 
+			double[] longitudeRads, int count, double radius, int[] foundIndices)
+	{
+		double limit = getHaversineLimit(radius);
+		int found = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (haversine(latitudeRads[i], cosLatitudes[i], longitudeRads[i]) < limit)
+				foundIndices[found++] = i;
+		}
 		
-		double deltaLatitudeRads = Math.toRadians(-HelpMath.checkDirection(
-				other.getLatitude() - getLatitude()));
-		double deltaLongitudeRads = Math.toRadians(-HelpMath.checkDirection(
-				other.getLongitude() - getLongitude()));
+		return found;
+	}
+	
+	private double haversine(double otherLatitudeRads, double otherCosLatitude, 
+			double otherLongitudeRads)
+	{
+		double sinHalfDeltaLatitude = Math.sin((otherLatitudeRads - this.latitudeRads) / 2);
+		double sinHalfDeltaLongitude = Math.sin((otherLongitudeRads - this.longitudeRads) / 2);
 		
-		double a = Math.pow(Math.sin(deltaLatitudeRads / 2), 2) + 
-				Math.cos(latRads1) * Math.cos(latRads2) * 
-				Math.pow(Math.sin(deltaLongitudeRads / 2), 2);
+		return sinHalfDeltaLatitude * sinHalfDeltaLatitude + this.cosLatitude * 
+				otherCosLatitude * sinHalfDeltaLongitude * sinHalfDeltaLongitude;
+	}
+	
+	private static double toDistance(double haversine)
+	{
+		return EARTH_RADIUS * 2 * Math.atan2(Math.sqrt(haversine), Math.sqrt(1 - haversine));
+	}
+	
+	// The haversine of each distance shorter than the radius is smaller than this
+	private static double getHaversineLimit(double radius)
+	{
+		double angle = radius / EARTH_RADIUS;
+		if (angle >= Math.PI)
+			return Double.POSITIVE_INFINITY;
 		
-		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+		double sinHalfAngle = Math.sin(angle / 2);
+		return sinHalfAngle * sinHalfAngle;
+	}
+	
+	private static int findSeparator(String s, int from, boolean required)
+	{
+		if (s == null)
+			throw new ObjectFormatException("Location cannot be null");
 		
-		return EARTH_RADIUS * c;
+		int separator = s.indexOf(';', from);
+		if (separator >= 0)
+			return separator;
+		if (required)
+			throw new ObjectFormatException("Can't parse a location from " + s);
+		return s.length();
 	}
 	
-	private Vector3D getRadianCoordinates()
+	private static double parseCoordinate(String s, int start, int end)
 	{
-		return new Vector3D(Math.toRadians(-getLatitude()), Math.toRadians(-getLongitude()));
+		while (start < end && s.charAt(start) <= ' ')
+			start++;
+		while (end > start && s.charAt(end - 1) <= ' ')
+			end--;
+		
+		// Plain decimal numbers with up to 15 significant digits are parsed directly. The
+		// result is exact since both the digits and the power of ten fit into a double.
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+		{
+			negative = s.charAt(i) == '-';
+			i++;
+		}
+		
+		long digits = 0;
+		boolean hasDigits = false;
+		int significantDigits = 0;
+		int decimals = -1;
+		boolean simple = i < end;
+		for (; i < end && simple; i++)
+		{
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				digits = digits * 10 + (c - '0');
+				hasDigits = true;
+				if (digits != 0)
+					significantDigits++;
+				if (decimals >= 0)
+					decimals++;
+			}
+			else if (c == '.' && decimals < 0)
+				decimals = 0;
+			else
+				simple = false;
+		}
+		
+		if (simple && hasDigits && significantDigits <= 15 && decimals < POWERS_OF_TEN.length)
+		{
+			double value = digits / POWERS_OF_TEN[Math.max(0, decimals)];
+			return negative ? -value : value;
+		}
+		
+		// Other formats are left to the standard parser
+		try
+		{
+			return Double.parseDouble(s.substring(start, end));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new ObjectFormatException("Location data must be in double format");
+		}
 	}
 	
 	/*
@@ -0,0 +1,247 @@
+package fusrodah_main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LocationGrid is a spatial index that divides the world into cells of equal latitude and 
+ * longitude span. The grid can be used for finding the identifiers placed near a location 
+ * without going through all of them. The coordinates in each cell are kept in arrays so 
+ * that a search doesn't create any objects besides the results.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class LocationGrid
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final double METRES_PER_DEGREE = 111320;
+	
+	private final double cellSizeDegrees;
+	private final int columnAmount;
+	private final Map<Long, Cell> cells;
+	private final Map<String, Location> locations;
+	// Reused between searches
+	private int[] foundIndices;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new empty grid
+	 * @param cellSizeMetres How long the sides of a single cell are at the equator. The 
+	 * cell size should be close to the radius used in searches.
+	 */
+	public LocationGrid(double cellSizeMetres)
+	{
+		this.cellSizeDegrees = cellSizeMetres / METRES_PER_DEGREE;
+		this.columnAmount = (int) Math.ceil(360 / this.cellSizeDegrees);
+		this.cells = new HashMap<>();
+		this.locations = new HashMap<>();
+		this.foundIndices = new int[16];
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Places an identifier to the grid. If the identifier was already in the grid, it is 
+	 * moved to the new location.
+	 * @param id The identifier that is placed
+	 * @param location The location of the identifier
+	 */
+	public synchronized void add(String id, Location location)
+	{
+		remove(id);
+		
+		this.locations.put(id, location);
+		
+		Long key = getCellKey(location);
+		Cell cell = this.cells.get(key);
+		if (cell == null)
+		{
+			cell = new Cell();
+			this.cells.put(key, cell);
+		}
+		cell.add(id, location);
+	}
+
+	/**
+	 * Removes an identifier from the grid
+	 * @param id The identifier that is removed
+	 * @return Was the identifier in the grid
+	 */
+	public synchronized boolean remove(String id)
+	{
+		Location location = this.locations.remove(id);
+		if (location == null)
+			return false;
+		
+		Long key = getCellKey(location);
+		Cell cell = this.cells.get(key);
+		if (cell != null)
+		{
+			cell.remove(id);
+			if (cell.size == 0)
+				this.cells.remove(key);
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Finds the identifiers that are placed within the given distance from the given location
+	 * @param origin The location the distances are measured from
+	 * @param radius The maximum distance (metres)
+	 * @return The identifiers placed closer than radius to the origin
+	 */
+	public synchronized List<String> findWithin(Location origin, double radius)
+	{
+		List<String> found = new ArrayList<>();
+		if (this.locations.isEmpty())
+			return found;
+		
+		double radiusDegrees = radius / METRES_PER_DEGREE;
+		int rowRadius = (int) Math.ceil(radiusDegrees / this.cellSizeDegrees);
+		
+		// The longitude span is widest at the row furthest from the equator
+		double maxLatitude = Math.min(90, Math.abs(origin.getLatitude()) + radiusDegrees);
+		double cosLatitude = Math.cos(Math.toRadians(maxLatitude));
+		int columnRadius = this.columnAmount / 2;
+		if (cosLatitude > 0.01)
+			columnRadius = Math.min(columnRadius, 
+					(int) Math.ceil(radiusDegrees / cosLatitude / this.cellSizeDegrees));
+		
+		int originRow = getRow(origin.getLatitude());
+		int firstColumn = getColumn(origin.getLongitude()) - columnRadius;
+		int lastColumn = firstColumn + 2 * columnRadius;
+		// Near the poles each column is checked, but only once
+		if (lastColumn - firstColumn >= this.columnAmount)
+		{
+			firstColumn = 0;
+			lastColumn = this.columnAmount - 1;
+		}
+		
+		for (int row = originRow - rowRadius; row <= originRow + rowRadius; row++)
+		{
+			for (int column = firstColumn; column <= lastColumn; column++)
+			{
+				Cell cell = this.cells.get(getCellKey(row, wrapColumn(column)));
+				if (cell == null)
+					continue;
+				
+				if (this.foundIndices.length < cell.size)
+					this.foundIndices = new int[cell.ids.length];
+				int foundAmount = origin.findWithin(cell.latitudeRads, cell.cosLatitudes, 
+						cell.longitudeRads, cell.size, radius, this.foundIndices);
+				for (int i = 0; i < foundAmount; i++)
+				{
+					found.add(cell.ids[this.foundIndices[i]]);
+				}
+			}
+		}
+		
+		return found;
+	}
+
+	/**
+	 * @return How many identifiers there are in the grid
+	 */
+	public synchronized int size()
+	{
+		return this.locations.size();
+	}
+
+	private Long getCellKey(Location location)
+	{
+		return getCellKey(getRow(location.getLatitude()), getColumn(location.getLongitude()));
+	}
+
+	private int getRow(double latitude)
+	{
+		return (int) Math.floor((latitude + 90) / this.cellSizeDegrees);
+	}
+
+	private int getColumn(double longitude)
+	{
+		return wrapColumn((int) Math.floor((longitude + 180) / this.cellSizeDegrees));
+	}
+
+	private int wrapColumn(int column)
+	{
+		return ((column % this.columnAmount) + this.columnAmount) % this.columnAmount;
+	}
+
+	private static Long getCellKey(int row, int column)
+	{
+		return ((long) row << 32) | (column & 0xffffffffL);
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class Cell
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private String[] ids;
+		private double[] latitudeRads, cosLatitudes, longitudeRads;
+		private int size;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public Cell()
+		{
+			this.ids = new String[4];
+			this.latitudeRads = new double[4];
+			this.cosLatitudes = new double[4];
+			this.longitudeRads = new double[4];
+			this.size = 0;
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public void add(String id, Location location)
+		{
+			if (this.size == this.ids.length)
+			{
+				int newLength = this.size * 2;
+				this.ids = Arrays.copyOf(this.ids, newLength);
+				this.latitudeRads = Arrays.copyOf(this.latitudeRads, newLength);
+				this.cosLatitudes = Arrays.copyOf(this.cosLatitudes, newLength);
+				this.longitudeRads = Arrays.copyOf(this.longitudeRads, newLength);
+			}
+			
+			this.ids[this.size] = id;
+			this.latitudeRads[this.size] = location.getLatitudeRadians();
+			this.cosLatitudes[this.size] = location.getCosLatitude();
+			this.longitudeRads[this.size] = location.getLongitudeRadians();
+			this.size++;
+		}
+		
+		public void remove(String id)
+		{
+			for (int i = 0; i < this.size; i++)
+			{
+				if (this.ids[i].equals(id))
+				{
+					// The last entry is moved to the removed entry's place
+					int last = this.size - 1;
+					this.ids[i] = this.ids[last];
+					this.latitudeRads[i] = this.latitudeRads[last];
+					this.cosLatitudes[i] = this.cosLatitudes[last];
+					this.longitudeRads[i] = this.longitudeRads[last];
+					this.ids[last] = null;
+					this.size = last;
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package fusrodah_main;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LoginKeyCache remembers the login keys that were recently found valid, so that each 
+ * authenticated request doesn't need to read the login keys from the database. Only a 
+ * hash of each key is stored and the hashes are compared in constant time. The entries 
+ * expire well before the login keys themselves and they are removed whenever the user 
+ * logs in or out.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class LoginKeyCache
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How long a validated key is trusted without checking the database again. In 
+	 * milliseconds.
+	 */
+	public static final long ENTRY_DURATION_MILLIS = 15 * 60 * 1000;
+	/**
+	 * How long after an invalidation the user's key is not cached, in milliseconds. The 
+	 * key change that caused the invalidation must be finished within this time.
+	 */
+	public static final long INVALIDATION_QUARANTINE_MILLIS = 60 * 1000;
+	private static final int MAX_ENTRIES = 10000;
+	
+	// The least recently used entries are removed once the cache is full
+	private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(
+			16, 0.75f, true)
+	{
+		private static final long serialVersionUID = -4526330467358290231L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private LoginKeyCache()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Checks whether the key was recently found valid for the user
+	 * @param userID The identifier of the user
+	 * @param key The login key provided by the client
+	 * @param nowMillis The current time in milliseconds
+	 * @return Was the key validated recently. False if the key should be checked from the 
+	 * database.
+	 */
+	public static boolean contains(String userID, String key, long nowMillis)
+	{
+		if (userID == null || key == null)
+			return false;
+		
+		Entry entry;
+		synchronized (entries)
+		{
+			entry = entries.get(userID);
+		}
+		
+		return entry != null && entry.keyHash != null && 
+				nowMillis < entry.millis + ENTRY_DURATION_MILLIS && 
+				MessageDigest.isEqual(entry.keyHash, hash(key));
+	}
+	
+	/**
+	 * Remembers that the key was found valid for the user. The key is not remembered if 
+	 * the user's key was invalidated while it was being checked or shortly before, since 
+	 * the check may have read the key before the change was written.
+	 * @param userID The identifier of the user
+	 * @param key The validated login key
+	 * @param checkStartedMillis The moment the key check started, in milliseconds
+	 */
+	public static void add(String userID, String key, long checkStartedMillis)
+	{
+		if (userID == null || key == null)
+			return;
+		
+		Entry entry = new Entry(hash(key), checkStartedMillis);
+		synchronized (entries)
+		{
+			Entry previous = entries.get(userID);
+			if (previous != null && previous.keyHash == null && previous.millis + 
+					INVALIDATION_QUARANTINE_MILLIS >= checkStartedMillis)
+				return;
+			
+			entries.put(userID, entry);
+		}
+	}
+	
+	/**
+	 * Forgets the key of a user. This should be done whenever the user's key changes or 
+	 * is removed.
+	 * @param userID The identifier of the user
+	 */
+	public static void invalidate(String userID)
+	{
+		// The invalidation is remembered so that the checks that are still in progress
+		// won't add the old key back
+		Entry invalidation = new Entry(null, System.currentTimeMillis());
+		synchronized (entries)
+		{
+			entries.put(userID, invalidation);
+		}
+	}
+	
+	private static byte[] hash(String key)
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256").digest(
+					key.getBytes(StandardCharsets.UTF_8));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Each Java platform is required to support SHA-256
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class Entry
+	{
+		// ATTRIBUTES	-------------------------
+		
+		// Null when the user's key was invalidated
+		private final byte[] keyHash;
+		// When the key was validated or invalidated
+		private final long millis;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public Entry(byte[] keyHash, long millis)
+		{
+			this.keyHash = keyHash;
+			this.millis = millis;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package fusrodah_main;
+
+import java.io.FileNotFoundException;
+
+import alliance_util.MaintenanceTask;
+
+/**
+ * This task writes the server metrics into a file every ten minutes
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class MetricsDumpTask extends MaintenanceTask
+{
+	// ATTRIBUTES	----------------------------------
+	
+	private final String fileName;
+	
+	
+	// CONSTRUCTOR	----------------------------------
+	
+	/**
+	 * Creates a new task
+	 * @param fileName The name of the file the metrics are written into
+	 */
+	public MetricsDumpTask(String fileName)
+	{
+		this.fileName = fileName;
+	}
+	
+	
+	// IMPLEMENTED METHODS	--------------------------
+	
+	@Override
+	public int getMaintenanceIntervalMinutes()
+	{
+		return 10;
+	}
+	
+	@Override
+	public void run()
+	{
+		try
+		{
+			FusrodahMetrics.writeToFile(this.fileName);
+		}
+		catch (FileNotFoundException e)
+		{
+			System.err.println("Failed to write the metrics");
+			e.printStackTrace();
+		}
+	}
+}
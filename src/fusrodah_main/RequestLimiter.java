@@ -0,0 +1,115 @@
+package fusrodah_main;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+
+/**
+ * RequestLimiter limits how many requests are handled at once. The other requests wait 
+ * for their turn, so that a burst of clients queues in front of the server instead of 
+ * competing over the database connections. The front end gives a request its turn before 
+ * passing it on, so a request that doesn't get a turn is turned away before anything is 
+ * done for it. The turn lasts until the whole response has been read. By default, the 
+ * requests are not limited.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class RequestLimiter
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How long a request waits for its turn by default, in milliseconds
+	 */
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 5000;
+	
+	private static volatile Semaphore permits = null;
+	private static volatile int maxConcurrentRequests = 0;
+	private static volatile long maxWaitMillis = 0;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private RequestLimiter()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Sets how many requests may be handled at once. This should be done when the server 
+	 * starts.
+	 * @param maxConcurrentRequests How many requests may be handled at once. 0 or less if 
+	 * the requests shouldn't be limited.
+	 * @param maxWaitMillis How long a request may wait for its turn at most
+	 */
+	public static void initialize(int maxConcurrentRequests, long maxWaitMillis)
+	{
+		RequestLimiter.maxWaitMillis = maxWaitMillis;
+		RequestLimiter.maxConcurrentRequests = maxConcurrentRequests;
+		if (maxConcurrentRequests > 0)
+			permits = new Semaphore(maxConcurrentRequests, true);
+		else
+			permits = null;
+	}
+	
+	/**
+	 * Waits until the request may be handled. Each successful call must be followed by a 
+	 * call to {@link #exit()}.
+	 * @throws HttpException If the request didn't get its turn in time
+	 */
+	public static void enter() throws HttpException
+	{
+		Semaphore currentPermits = permits;
+		if (currentPermits == null)
+			return;
+		
+		try
+		{
+			if (!currentPermits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS))
+				throw new ServiceUnavailableException(
+						"The server is too busy at the moment, please try again later");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InternalServerException("Interrupted while waiting for a turn", e);
+		}
+	}
+	
+	/**
+	 * Finishes handling a request, allowing the next request to be handled
+	 */
+	public static void exit()
+	{
+		Semaphore currentPermits = permits;
+		if (currentPermits != null)
+			currentPermits.release();
+	}
+	
+	/**
+	 * @return The current state of the limiter as attributes. Null if the requests are not 
+	 * limited.
+	 */
+	public static Map<String, String> getAttributes()
+	{
+		Semaphore currentPermits = permits;
+		if (currentPermits == null)
+			return null;
+		
+		Map<String, String> attributes = new HashMap<>();
+		attributes.put("maxConcurrent", String.valueOf(maxConcurrentRequests));
+		attributes.put("active", String.valueOf(
+				maxConcurrentRequests - currentPermits.availablePermits()));
+		attributes.put("waiting", String.valueOf(currentPermits.getQueueLength()));
+		
+		return attributes;
+	}
+}
@@ -0,0 +1,42 @@
+package fusrodah_main;
+
+import org.apache.http.HttpStatus;
+
+import nexus_http.HttpException;
+
+/**
+ * These exceptions are thrown when the server can't handle a request at the moment but 
+ * could handle it later, like when the server is too busy. The client should try again 
+ * later.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class ServiceUnavailableException extends HttpException
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final long serialVersionUID = -4417295026851632095L;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new exception
+	 * @param message The message sent to the client
+	 */
+	public ServiceUnavailableException(String message)
+	{
+		super(HttpStatus.SC_SERVICE_UNAVAILABLE, message);
+	}
+	
+	/**
+	 * Creates a new exception
+	 * @param message The message sent to the client
+	 * @param cause The cause of the exception
+	 */
+	public ServiceUnavailableException(String message, Throwable cause)
+	{
+		super(HttpStatus.SC_SERVICE_UNAVAILABLE, message, cause);
+	}
+}
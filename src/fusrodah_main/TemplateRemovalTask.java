@@ -1,21 +1,30 @@
 package fusrodah_main;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
-import nexus_http.HttpException;
-import fusrodah_rest.ShoutTemplateEntity;
-import alliance_rest.DatabaseEntityTable;
+import fusrodah_rest.LiveShoutStore;
+import fusrodah_rest.ShoutEntity;
 import alliance_util.MaintenanceTask;
-import vault_database.DatabaseUnavailableException;
 
 /**
- * This task removes the old templates
+ * This task removes the old templates. The templates that can't be shouted anymore but 
+ * weren't completed are deleted along with their shouts in chunks, without reading each 
+ * template separately.
  * @author Mikko Hilpinen
  * @since 12.4.2015
  */
 public class TemplateRemovalTask extends MaintenanceTask
 {
+	// ATTRIBUTES	----------------------------------------
+	
+	private static final int CHUNK_SIZE = 500;
+	
+	
 	// IMPLEMENTED METHODS	--------------------------------
 
 	@Override
@@ -27,24 +36,87 @@ public class TemplateRemovalTask extends MaintenanceTask
 	@Override
 	public void run()
 	{
-		// Finds out all the id's and last shout times of the existing templates
-		try
+		long started = System.nanoTime();
+		int deletedRows = removeOldTemplates();
+		FusrodahMetrics.recordTaskRun("templateRemoval", started, deletedRows);
+	}
+	
+	
+	// OTHER METHODS	------------------------------------
+	
+	// Returns the amount of deleted template and shout rows
+	private int removeOldTemplates()
+	{
+		int deletedRows = 0;
+		try (Connection connection = FusrodahDatabase.openConnection())
 		{
-			List<String> templateIDs = DatabaseEntityTable.findMatchingIDs(
-					FusrodahTable.TEMPLATES, new String[0], new String[0]);
+			List<String> templateIDs = findExpiredTemplateIDs(connection);
+			if (templateIDs.isEmpty())
+				return 0;
+			
+			// Deletes the templates and their shouts in a single transaction
+			connection.setAutoCommit(false);
+			try
+			{
+				for (int i = 0; i < templateIDs.size(); i += CHUNK_SIZE)
+				{
+					List<String> chunk = templateIDs.subList(i, 
+							Math.min(i + CHUNK_SIZE, templateIDs.size()));
+					deletedRows += FusrodahDatabase.deleteWhereIn(connection, 
+							FusrodahTable.SHOUTS, "templateID", chunk);
+					deletedRows += FusrodahDatabase.deleteWhereIn(connection, 
+							FusrodahTable.TEMPLATES, "id", chunk);
+				}
+				connection.commit();
+			}
+			catch (SQLException e)
+			{
+				connection.rollback();
+				throw e;
+			}
 			
-			// Deletes old templates that can't be shouted but are not complete either
 			for (String templateID : templateIDs)
 			{
-				ShoutTemplateEntity template = new ShoutTemplateEntity(templateID);
-				if (!template.isCompleted() && !template.canBeShouted())
-					template.delete();
+				LiveShoutStore.forgetTemplate(templateID);
 			}
 		}
-		catch (DatabaseUnavailableException | SQLException | HttpException e)
+		catch (SQLException e)
 		{
 			System.err.println("Failed to remove old templates");
 			e.printStackTrace();
+			
+			// Nothing was removed if the transaction failed
+			return 0;
+		}
+		
+		return deletedRows;
+	}
+	
+	private static List<String> findExpiredTemplateIDs(Connection connection) throws 
+			SQLException
+	{
+		// Templates that haven't been shouted after this moment can't be shouted anymore
+		long expiredBefore = System.currentTimeMillis() - 
+				ShoutEntity.SHOUT_CAN_BE_SHOUTED_DURATION * 60 * 1000L;
+		List<String> templateIDs = new ArrayList<>();
+		for (String tableName : FusrodahDatabase.getTableNames(connection, 
+				FusrodahTable.TEMPLATES))
+		{
+			try (PreparedStatement statement = connection.prepareStatement(
+					"SELECT id FROM " + tableName + 
+					" WHERE completed = 'false' AND lastShoutTime < ?"))
+			{
+				statement.setLong(1, expiredBefore);
+				try (ResultSet result = statement.executeQuery())
+				{
+					while (result.next())
+					{
+						templateIDs.add(result.getString(1));
+					}
+				}
+			}
 		}
+		
+		return templateIDs;
 	}
 }
@@ -0,0 +1,160 @@
+package fusrodah_main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TimeBucketRing keeps values for a limited time window. The values are placed into buckets 
+ * based on their time and a whole bucket is dropped once all of its values have aged out of 
+ * the window.
+ * 
+ * @author Mikko Hilpinen
+ * @param <T> The type of value stored in the ring
+ * @since 17.10.2026
+ */
+public class TimeBucketRing<T>
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private final long bucketDurationMillis, windowMillis;
+	private final long[] bucketStarts;
+	private final List<Map<String, T>> buckets;
+	private final Map<String, Integer> bucketIndices;
+	private final List<T> droppedValues;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new empty ring
+	 * @param bucketDurationMillis How long a time period a single bucket covers
+	 * @param windowMillis How long the values are kept after their time
+	 */
+	public TimeBucketRing(long bucketDurationMillis, long windowMillis)
+	{
+		this.bucketDurationMillis = bucketDurationMillis;
+		this.windowMillis = windowMillis;
+		
+		int bucketAmount = (int) (windowMillis / bucketDurationMillis) + 2;
+		this.bucketStarts = new long[bucketAmount];
+		this.buckets = new ArrayList<>(bucketAmount);
+		for (int i = 0; i < bucketAmount; i++)
+		{
+			this.bucketStarts[i] = Long.MIN_VALUE;
+			this.buckets.add(new HashMap<String, T>());
+		}
+		this.bucketIndices = new HashMap<>();
+		this.droppedValues = new ArrayList<>();
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Adds a new value to the ring
+	 * @param id The identifier of the value
+	 * @param value The value that is added
+	 * @param timeMillis The time of the value
+	 * @return False if the value was too old to be added to the ring
+	 */
+	public synchronized boolean add(String id, T value, long timeMillis)
+	{
+		long bucketStart = timeMillis - Math.floorMod(timeMillis, this.bucketDurationMillis);
+		int index = getBucketIndex(bucketStart);
+		
+		if (this.bucketStarts[index] != bucketStart)
+		{
+			// A newer bucket already occupies the slot, so the value is too old
+			if (this.bucketStarts[index] > bucketStart)
+				return false;
+			
+			// Otherwise the bucket in the slot has aged out
+			dropBucket(index);
+			this.bucketStarts[index] = bucketStart;
+		}
+		
+		remove(id);
+		this.buckets.get(index).put(id, value);
+		this.bucketIndices.put(id, index);
+		
+		return true;
+	}
+	
+	/**
+	 * Finds a value from the ring
+	 * @param id The identifier of the value
+	 * @return The value with the given identifier or null if there was no such value
+	 */
+	public synchronized T get(String id)
+	{
+		Integer index = this.bucketIndices.get(id);
+		if (index == null)
+			return null;
+		
+		return this.buckets.get(index).get(id);
+	}
+	
+	/**
+	 * Removes a value from the ring
+	 * @param id The identifier of the value
+	 * @return The removed value or null if there was no such value
+	 */
+	public synchronized T remove(String id)
+	{
+		Integer index = this.bucketIndices.remove(id);
+		if (index == null)
+			return null;
+		
+		return this.buckets.get(index).remove(id);
+	}
+	
+	/**
+	 * Drops every bucket whose values are all older than the time window
+	 * @param nowMillis The current time
+	 * @return The values that were dropped from the ring, including those whose bucket was 
+	 * replaced while adding new values
+	 */
+	public synchronized List<T> expire(long nowMillis)
+	{
+		for (int i = 0; i < this.bucketStarts.length; i++)
+		{
+			if (this.bucketStarts[i] != Long.MIN_VALUE && this.bucketStarts[i] + 
+					this.bucketDurationMillis + this.windowMillis <= nowMillis)
+			{
+				dropBucket(i);
+				this.bucketStarts[i] = Long.MIN_VALUE;
+			}
+		}
+		
+		List<T> dropped = new ArrayList<>(this.droppedValues);
+		this.droppedValues.clear();
+		return dropped;
+	}
+	
+	/**
+	 * @return How many values there are in the ring
+	 */
+	public synchronized int size()
+	{
+		return this.bucketIndices.size();
+	}
+	
+	private int getBucketIndex(long bucketStart)
+	{
+		return (int) Math.floorMod(bucketStart / this.bucketDurationMillis, 
+				(long) this.bucketStarts.length);
+	}
+	
+	private void dropBucket(int index)
+	{
+		Map<String, T> bucket = this.buckets.get(index);
+		for (String id : bucket.keySet())
+		{
+			this.bucketIndices.remove(id);
+		}
+		this.droppedValues.addAll(bucket.values());
+		bucket.clear();
+	}
+}
@@ -0,0 +1,46 @@
+package fusrodah_main;
+
+import fusrodah_rest.UserCache;
+import nexus_http.HttpException;
+import alliance_util.MaintenanceTask;
+
+/**
+ * This task writes the cached user changes to the database and removes the users that 
+ * haven't been used in a while from the cache
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class UserCacheFlushTask extends MaintenanceTask
+{
+	// ATTRIBUTES	----------------------------------
+	
+	private static final long MAX_IDLE_MILLIS = 30 * 60 * 1000;
+	
+	
+	// IMPLEMENTED METHODS	--------------------------
+	
+	@Override
+	public int getMaintenanceIntervalMinutes()
+	{
+		return 1;
+	}
+	
+	@Override
+	public void run()
+	{
+		long started = System.nanoTime();
+		try
+		{
+			UserCache.flush();
+		}
+		catch (HttpException e)
+		{
+			System.err.println("Failed to write the user changes");
+			e.printStackTrace();
+		}
+		
+		UserCache.removeIdleUsers(MAX_IDLE_MILLIS);
+		
+		FusrodahMetrics.recordTaskRun("userCacheFlush", started);
+	}
+}
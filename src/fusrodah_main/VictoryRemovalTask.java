@@ -1,43 +1,211 @@
 package fusrodah_main;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
 import alliance_util.MaintenanceTask;
-import nexus_http.HttpException;
+import fusrodah_rest.LiveShoutStore;
 import fusrodah_rest.VictoryEntity;
+import fusrodah_rest.VictoryIndex;
 
 /**
  * This maintenance task removes the completed templates after they have been on the server 
- * long enough
+ * long enough. The victories are removed in small chunks, oldest first. The task shares 
+ * the maintenance thread with the other tasks, so each run only works for a short while 
+ * and removes at most as many rows as the rows per second budget allows between the runs. 
+ * Since the removed rows are gone, the next run simply continues from the oldest remaining 
+ * victories. The chunks get smaller when the database responds slowly.
  * @author Mikko Hilpinen
  * @since 29.4.2015
  */
 public class VictoryRemovalTask extends MaintenanceTask
 {	
+	// ATTRIBUTES	----------------------------------
+	
+	private static final int MIN_CHUNK_SIZE = 10;
+	private static final int MAX_CHUNK_SIZE = 500;
+	// Chunks that take longer than this make the task slow down
+	private static final long TARGET_CHUNK_MILLIS = 200;
+	// How long a single run may keep the maintenance thread and the connection
+	private static final long RUN_BUDGET_MILLIS = 1000;
+	private static final int INTERVAL_MINUTES = 5;
+	
+	private final int rowsPerSecond;
+	private int chunkSize;
+	
+	
+	// CONSTRUCTOR	----------------------------------
+	
+	/**
+	 * Creates a new task that removes at most 200 rows per second
+	 */
+	public VictoryRemovalTask()
+	{
+		this(200);
+	}
+	
+	/**
+	 * Creates a new task
+	 * @param rowsPerSecond How many rows (victories, templates and shouts) the task may 
+	 * remove in a second, on average
+	 */
+	public VictoryRemovalTask(int rowsPerSecond)
+	{
+		this.rowsPerSecond = Math.max(1, rowsPerSecond);
+		this.chunkSize = MIN_CHUNK_SIZE;
+	}
+	
+	
 	// IMPLEMENTED METHODS	--------------------------
 
 	@Override
 	public int getMaintenanceIntervalMinutes()
 	{
-		// The maintenance is done once a day
-		return 24 * 60;
+		// The removal is spread over many short runs
+		return INTERVAL_MINUTES;
 	}
 
 	@Override
 	public void run()
+	{
+		long started = System.nanoTime();
+		int removedRows = removeOldVictories();
+		FusrodahMetrics.recordTaskRun("victoryRemoval", started, removedRows);
+	}
+	
+	
+	// OTHER METHODS	------------------------------
+	
+	// Returns the amount of removed victory, template and shout rows
+	private int removeOldVictories()
 	{
 		// Removes any victory element that is too old
-		try
+		long started = System.currentTimeMillis();
+		long removedBefore = started - VictoryEntity.VICTORY_DURATION_MILLIS;
+		long maxRows = (long) this.rowsPerSecond * INTERVAL_MINUTES * 60;
+		int removedRows = 0;
+		
+		try (Connection connection = FusrodahDatabase.openConnection())
 		{
-			for (String victoryID : VictoryEntity.getAllVictoryIDs())
+			for (String tableName : FusrodahDatabase.getTableNames(connection, 
+					FusrodahTable.VICTORIES))
 			{
-				VictoryEntity victory = new VictoryEntity(victoryID);
-				if (victory.shouldBeRemoved())
-					victory.delete();
+				while (true)
+				{
+					// The rest of the victories are removed during the next runs
+					if (removedRows >= maxRows || 
+							System.currentTimeMillis() - started >= RUN_BUDGET_MILLIS)
+						return removedRows;
+					
+					long chunkStarted = System.currentTimeMillis();
+					int requestedSize = this.chunkSize;
+					
+					List<String[]> chunk = findRemovedVictories(connection, tableName, 
+							removedBefore);
+					if (chunk.isEmpty())
+						break;
+					
+					removedRows += removeVictories(connection, chunk);
+					
+					adjustChunkSize(System.currentTimeMillis() - chunkStarted);
+					
+					// A partial chunk means that there are no more old victories
+					if (chunk.size() < requestedSize)
+						break;
+				}
 			}
 		}
-		catch (HttpException e)
+		catch (SQLException e)
 		{
 			System.err.println("Failed to remove old victories");
 			e.printStackTrace();
 		}
+		
+		return removedRows;
+	}
+	
+	// Returns {victoryID, templateID} pairs
+	private List<String[]> findRemovedVictories(Connection connection, String tableName, 
+			long removedBefore) throws SQLException
+	{
+		List<String[]> victories = new ArrayList<>();
+		
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT id, templateID FROM " + tableName + 
+				" WHERE created < ? ORDER BY created LIMIT ?"))
+		{
+			// The created index keeps this cheap even when the table is large
+			statement.setLong(1, removedBefore);
+			statement.setInt(2, this.chunkSize);
+			
+			try (ResultSet result = statement.executeQuery())
+			{
+				while (result.next())
+				{
+					victories.add(new String[] {result.getString(1), result.getString(2)});
+				}
+			}
+		}
+		
+		return victories;
+	}
+	
+	private static int removeVictories(Connection connection, List<String[]> victories)
+			throws SQLException
+	{
+		List<String> victoryIDs = new ArrayList<>();
+		List<String> templateIDs = new ArrayList<>();
+		for (String[] victory : victories)
+		{
+			victoryIDs.add(victory[0]);
+			templateIDs.add(victory[1]);
+		}
+		
+		// The victories are removed along with their templates and shouts
+		int removedRows = 0;
+		connection.setAutoCommit(false);
+		try
+		{
+			removedRows += FusrodahDatabase.deleteWhereIn(connection, FusrodahTable.SHOUTS, 
+					"templateID", templateIDs);
+			removedRows += FusrodahDatabase.deleteWhereIn(connection, 
+					FusrodahTable.TEMPLATES, "id", templateIDs);
+			removedRows += FusrodahDatabase.deleteWhereIn(connection, 
+					FusrodahTable.VICTORIES, "id", victoryIDs);
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			connection.rollback();
+			throw e;
+		}
+		finally
+		{
+			connection.setAutoCommit(true);
+		}
+		
+		for (String victoryID : victoryIDs)
+		{
+			VictoryIndex.remove(victoryID);
+		}
+		for (String templateID : templateIDs)
+		{
+			LiveShoutStore.forgetTemplate(templateID);
+		}
+		
+		return removedRows;
+	}
+	
+	private void adjustChunkSize(long chunkDuration)
+	{
+		// Slow responses make the chunks smaller, fast ones make them larger
+		if (chunkDuration > TARGET_CHUNK_MILLIS)
+			this.chunkSize = Math.max(MIN_CHUNK_SIZE, this.chunkSize / 2);
+		else if (chunkDuration < TARGET_CHUNK_MILLIS / 2)
+			this.chunkSize = Math.min(MAX_CHUNK_SIZE, this.chunkSize * 2);
 	}
 }
@@ -8,6 +8,7 @@ import vault_database.DatabaseAccessor;
 import vault_database.DatabaseUnavailableException;
 import fusrodah_main.FusrodahLoginTable;
 import fusrodah_main.FusrodahTable;
+import fusrodah_main.LoginKeyCache;
 import nexus_http.HttpException;
 import nexus_http.InternalServerException;
 import nexus_rest.RestEntity;
@@ -40,6 +41,8 @@ public class FusRoDahLoginManagerEntity extends LoginManagerEntity
 	protected RestEntity getMissingEntity(String pathPart, Map<String, String> parameters) 
 			throws HttpException
 	{
+		String userID = pathPart;
+		
 		// Accepts userNames as well
 		if (!pathPart.isEmpty() && !Character.isDigit(pathPart.charAt(0)))
 		{
@@ -49,7 +52,7 @@ public class FusRoDahLoginManagerEntity extends LoginManagerEntity
 						FusrodahTable.USERS, "userName", pathPart, 
 						FusrodahTable.USERS.getIDColumnName());
 				if (!matchingIDs.isEmpty())
-					return super.getMissingEntity(matchingIDs.get(0), parameters);
+					userID = matchingIDs.get(0);
 			}
 			catch (DatabaseUnavailableException | SQLException e)
 			{
@@ -57,6 +60,18 @@ public class FusRoDahLoginManagerEntity extends LoginManagerEntity
 			}
 		}
 		
-		return super.getMissingEntity(pathPart, parameters);
+		// Logging in replaces the user's key and logging out removes it, so the cached key
+		// can't be trusted anymore. The login key is written by the time the entity is
+		// returned, while logging out removes the key right after. The cache doesn't
+		// accept the user's key again until the change has had time to finish.
+		LoginKeyCache.invalidate(userID);
+		try
+		{
+			return super.getMissingEntity(userID, parameters);
+		}
+		finally
+		{
+			LoginKeyCache.invalidate(userID);
+		}
 	}
 }
@@ -0,0 +1,352 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahTable;
+import fusrodah_main.Location;
+import fusrodah_main.LocationGrid;
+import fusrodah_main.TimeBucketRing;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+import nexus_http.NotFoundException;
+
+/**
+ * LiveShoutStore keeps the shouts that can still be shouted forward in memory. The shouts 
+ * are placed into one minute buckets that are dropped once the shouts in them have aged 
+ * out. The database still holds every shout, the store simply serves the live ones.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class LiveShoutStore
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final long MINUTE_MILLIS = 60 * 1000;
+	
+	private static final TimeBucketRing<ShoutEntity> shouts = new TimeBucketRing<>(
+			MINUTE_MILLIS, ShoutEntity.SHOUT_CAN_BE_SHOUTED_DURATION * MINUTE_MILLIS);
+	// The shouts that can still be heard, indexed by their location
+	private static final LocationGrid hearableShouts = new LocationGrid(
+			ShoutEntity.MAXIMUM_REACH);
+	private static final Map<String, LiveTemplate> templates = new HashMap<>();
+	// The templates completed while they weren't in the store, with the completion times.
+	// A template that is being read while it is completed gets its status from here.
+	private static final Map<String, Long> completedMillis = new HashMap<>();
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private LiveShoutStore()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Reads the shouts that can still be shouted forward from the database and stores 
+	 * them. The expired shouts are left in the database. This should be done once when 
+	 * the server starts.
+	 * @throws HttpException If the shouts couldn't be read
+	 */
+	public static void initialize() throws HttpException
+	{
+		long nowMillis = System.currentTimeMillis();
+		List<Object> conditionValues = new ArrayList<>();
+		conditionValues.add(nowMillis - ShoutEntity.SHOUT_CAN_BE_SHOUTED_DURATION * 
+				MINUTE_MILLIS);
+		
+		List<Map<String, String>> liveRows;
+		try (Connection connection = FusrodahDatabase.openConnection())
+		{
+			liveRows = FusrodahDatabase.selectWhere(connection, FusrodahTable.SHOUTS, 
+					Collections.singletonList("created > ?"), conditionValues);
+		}
+		catch (SQLException e)
+		{
+			throw new InternalServerException("Couldn't read the live shouts", e);
+		}
+		
+		for (Map<String, String> row : liveRows)
+		{
+			add(new ShoutEntity(row.get("id")), nowMillis);
+		}
+	}
+	
+	/**
+	 * Finds a shout. Live shouts are served from memory while the older shouts are read 
+	 * from the database.
+	 * @param shoutID The identifier of the shout
+	 * @return The shout with the given identifier
+	 * @throws HttpException If the shout couldn't be read or found
+	 */
+	public static ShoutEntity getShout(String shoutID) throws HttpException
+	{
+		ShoutEntity shout = shouts.get(shoutID);
+		if (shout != null)
+			return shout;
+		
+		shout = new ShoutEntity(shoutID);
+		add(shout, System.currentTimeMillis());
+		
+		return shout;
+	}
+	
+	/**
+	 * Finds a shout from the store without reading it from the database
+	 * @param shoutID The identifier of the shout
+	 * @return The live shout with the given identifier. Null if the shout isn't in the 
+	 * store.
+	 */
+	static ShoutEntity getLiveShout(String shoutID)
+	{
+		return shouts.get(shoutID);
+	}
+	
+	/**
+	 * Adds a shout to the store. Shouts that can't be shouted forward anymore are not added.
+	 * @param shout The shout that is added
+	 * @param nowMillis The current time in milliseconds
+	 * @throws HttpException If the shout's template couldn't be read
+	 */
+	public static void add(ShoutEntity shout, long nowMillis) throws HttpException
+	{
+		if (!shout.canBeReshouted(nowMillis))
+			return;
+		
+		String templateID = shout.getTemplateID();
+		LiveTemplate readTemplate = null;
+		while (true)
+		{
+			synchronized (templates)
+			{
+				removeExpired(nowMillis);
+				
+				LiveTemplate template = templates.get(templateID);
+				if (template == null && readTemplate != null)
+				{
+					// The template may have been completed while it was being read
+					template = readTemplate;
+					if (completedMillis.containsKey(templateID))
+						template.completed = true;
+				}
+				
+				if (template != null)
+				{
+					if (!shouts.add(shout.getDatabaseID(), shout, shout.getCreationMillis()))
+						return;
+					
+					templates.put(templateID, template);
+					template.shoutIDs.add(shout.getDatabaseID());
+					
+					if (shout.canBeHeard(nowMillis))
+						hearableShouts.add(shout.getDatabaseID(), shout.getLocation());
+					return;
+				}
+			}
+			
+			// The template is read outside the lock when it isn't known yet
+			readTemplate = new LiveTemplate(shout.getTemplate());
+		}
+	}
+	
+	/**
+	 * Finds the shouts that can still be heard near the given location. The shouts still 
+	 * need to be checked with {@link ShoutEntity#isValidFor(Location, String, long)}.
+	 * @param location The location where the shouts are heard
+	 * @param nowMillis The current time in milliseconds
+	 * @return The live shouts that reach the location
+	 * @throws HttpException If the operation failed
+	 */
+	public static List<ShoutEntity> findHearableShoutsNear(Location location, 
+			long nowMillis) throws HttpException
+	{
+		List<ShoutEntity> found = new ArrayList<>();
+		
+		synchronized (templates)
+		{
+			removeExpired(nowMillis);
+			
+			for (String shoutID : hearableShouts.findWithin(location, 
+					ShoutEntity.MAXIMUM_REACH))
+			{
+				ShoutEntity shout = shouts.get(shoutID);
+				
+				// Shouts that can't be heard anymore are dropped from the index
+				if (shout == null || !shout.canBeHeard(nowMillis))
+					hearableShouts.remove(shoutID);
+				else
+					found.add(shout);
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Checks whether a shout template has been completed
+	 * @param templateID The identifier of the template
+	 * @return Has the template been completed
+	 * @throws HttpException If the template couldn't be read
+	 */
+	public static boolean templateIsCompleted(String templateID) throws HttpException
+	{
+		synchronized (templates)
+		{
+			LiveTemplate template = templates.get(templateID);
+			if (template != null)
+				return template.completed;
+		}
+		
+		try
+		{
+			return RequestScope.getTemplate(templateID).isCompleted();
+		}
+		catch (NotFoundException e)
+		{
+			// Removed templates are treated like completed ones
+			return true;
+		}
+	}
+	
+	/**
+	 * Finds the location where a shout template was started
+	 * @param templateID The identifier of the template
+	 * @return The start location of the template
+	 * @throws HttpException If the template couldn't be read
+	 */
+	public static Location getTemplateStartLocation(String templateID) throws HttpException
+	{
+		synchronized (templates)
+		{
+			LiveTemplate template = templates.get(templateID);
+			if (template != null)
+				return template.startLocation;
+		}
+		
+		return RequestScope.getTemplate(templateID).getStartLocation();
+	}
+	
+	/**
+	 * Finds the location a shout template is trying to reach
+	 * @param templateID The identifier of the template
+	 * @return The end location of the template
+	 * @throws HttpException If the template couldn't be read
+	 */
+	public static Location getTemplateEndLocation(String templateID) throws HttpException
+	{
+		synchronized (templates)
+		{
+			LiveTemplate template = templates.get(templateID);
+			if (template != null)
+				return template.endLocation;
+		}
+		
+		return RequestScope.getTemplate(templateID).getEndLocation();
+	}
+	
+	/**
+	 * Marks a template completed so that the shouts created from it can no longer be heard
+	 * @param templateID The identifier of the template
+	 */
+	public static void markTemplateCompleted(String templateID)
+	{
+		synchronized (templates)
+		{
+			LiveTemplate template = templates.get(templateID);
+			if (template == null)
+			{
+				// Remembered in case the template is being added at the same time
+				completedMillis.put(templateID, System.currentTimeMillis());
+				return;
+			}
+			
+			template.completed = true;
+			for (String shoutID : template.shoutIDs)
+			{
+				hearableShouts.remove(shoutID);
+			}
+		}
+	}
+	
+	/**
+	 * Removes each shout created from the template from the store. This should be done 
+	 * when the template is deleted.
+	 * @param templateID The identifier of the template
+	 */
+	public static void forgetTemplate(String templateID)
+	{
+		synchronized (templates)
+		{
+			LiveTemplate template = templates.remove(templateID);
+			if (template == null)
+				return;
+			
+			for (String shoutID : template.shoutIDs)
+			{
+				shouts.remove(shoutID);
+				hearableShouts.remove(shoutID);
+			}
+		}
+	}
+	
+	// Must be called while holding the templates lock
+	private static void removeExpired(long nowMillis)
+	{
+		// The completions only need to be remembered while a template is being read
+		Iterator<Long> completions = completedMillis.values().iterator();
+		while (completions.hasNext())
+		{
+			if (completions.next() < nowMillis - MINUTE_MILLIS)
+				completions.remove();
+		}
+		
+		for (ShoutEntity shout : shouts.expire(nowMillis))
+		{
+			hearableShouts.remove(shout.getDatabaseID());
+			
+			LiveTemplate template = templates.get(shout.getTemplateID());
+			if (template != null)
+			{
+				template.shoutIDs.remove(shout.getDatabaseID());
+				if (template.shoutIDs.isEmpty())
+					templates.remove(shout.getTemplateID());
+			}
+		}
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class LiveTemplate
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private boolean completed;
+		private final Location startLocation, endLocation;
+		private final Set<String> shoutIDs;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public LiveTemplate(ShoutTemplateEntity template)
+		{
+			this.completed = template.isCompleted();
+			this.startLocation = template.getStartLocation();
+			this.endLocation = template.getEndLocation();
+			this.shoutIDs = new HashSet<>();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package fusrodah_rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fusrodah_main.FusrodahMetrics;
+import nexus_http.HttpException;
+import nexus_rest.ImmutableRestEntity;
+import nexus_rest.RestEntity;
+import nexus_rest.RestEntityLinkList;
+
+/**
+ * This read-only entity presents the server metrics. Each endpoint and maintenance task 
+ * is presented as a separate entity under the list.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class MetricsListEntity extends RestEntityLinkList
+{
+	// CONSTRUCTOR	------------------------------
+	
+	/**
+	 * Creates a new metrics list below the given entity
+	 * @param parent The parent of this entity
+	 */
+	public MetricsListEntity(RestEntity parent)
+	{
+		super("metrics", parent);
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------------------
+	
+	@Override
+	protected List<RestEntity> getEntities() throws HttpException
+	{
+		// The metrics are read again for each request
+		List<RestEntity> entities = new ArrayList<>();
+		for (Map.Entry<String, Map<String, String>> metric : 
+				FusrodahMetrics.getMetrics().entrySet())
+		{
+			entities.add(new ImmutableRestEntity(metric.getKey(), this, metric.getValue()));
+		}
+		
+		return entities;
+	}
+	
+	@Override
+	public void trim(Map<String, String> parameters)
+	{
+		// No trimming required
+	}
+}
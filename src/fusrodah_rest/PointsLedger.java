@@ -0,0 +1,131 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahTable;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+
+/**
+ * PointsLedger awards points to the users. The points are added in the database with a 
+ * single increment statement, so concurrent awards never overwrite each other and the 
+ * users don't need to be read first. Within a request scope, the points are awarded when 
+ * the scope ends.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class PointsLedger
+{
+	// CONSTRUCTOR	-----------------------------
+	
+	private PointsLedger()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Awards points to a single user
+	 * @param userID The identifier of the user who receives the points
+	 * @param increment How many points are given
+	 * @throws HttpException If the points couldn't be written
+	 */
+	public static void award(String userID, int increment) throws HttpException
+	{
+		Map<String, Integer> increments = new HashMap<>();
+		increments.put(userID, increment);
+		award(increments);
+	}
+	
+	/**
+	 * Awards points to multiple users at once
+	 * @param increments How many points are given to each user. User ids are used as keys.
+	 * @throws HttpException If the points couldn't be written
+	 */
+	public static void award(Map<String, Integer> increments) throws HttpException
+	{
+		if (increments.isEmpty() || RequestScope.deferAward(increments))
+			return;
+		
+		try (Connection connection = FusrodahDatabase.openConnection())
+		{
+			connection.setAutoCommit(false);
+			award(connection, increments);
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			throw new InternalServerException("Failed to award the points", e);
+		}
+		
+		applyToCache(increments);
+	}
+	
+	/**
+	 * Awards points to multiple users as a part of a larger transaction. The cached users 
+	 * must be updated separately once the transaction has been committed.
+	 * @param connection The connection used for the transaction
+	 * @param increments How many points are given to each user. User ids are used as keys.
+	 * @throws SQLException If the points couldn't be written
+	 */
+	static void award(Connection connection, Map<String, Integer> increments) throws 
+			SQLException
+	{
+		if (increments.isEmpty())
+			return;
+		
+		// UPDATE users SET points = points + CASE id WHEN ? THEN ? ... END WHERE id IN (...)
+		StringBuilder cases = new StringBuilder();
+		StringBuilder ids = new StringBuilder();
+		for (int i = 0; i < increments.size(); i++)
+		{
+			cases.append(" WHEN ? THEN ?");
+			if (i > 0)
+				ids.append(", ");
+			ids.append("?");
+		}
+		
+		// The users may be in any of the user tables
+		for (String tableName : FusrodahDatabase.getTableNames(connection, 
+				FusrodahTable.USERS))
+		{
+			try (PreparedStatement statement = connection.prepareStatement("UPDATE " + 
+					tableName + " SET points = points + CASE id" + cases + " ELSE 0 END" + 
+					" WHERE id IN (" + ids + ")"))
+			{
+				int index = 1;
+				for (Map.Entry<String, Integer> increment : increments.entrySet())
+				{
+					statement.setString(index++, increment.getKey());
+					statement.setInt(index++, increment.getValue());
+				}
+				for (String userID : increments.keySet())
+				{
+					statement.setString(index++, userID);
+				}
+				
+				statement.executeUpdate();
+			}
+		}
+	}
+	
+	/**
+	 * Updates the cached users after the points have been written to the database
+	 * @param increments How many points were given to each user. User ids are used as keys.
+	 */
+	static void applyToCache(Map<String, Integer> increments)
+	{
+		for (Map.Entry<String, Integer> increment : increments.entrySet())
+		{
+			UserCache.applyAwardedPoints(increment.getKey(), increment.getValue());
+		}
+	}
+}
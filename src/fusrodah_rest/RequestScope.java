@@ -0,0 +1,395 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahMetrics;
+import fusrodah_main.FusrodahTable;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+import alliance_rest.DatabaseEntity;
+
+/**
+ * RequestScope makes sure each entity is read from the database at most once during a 
+ * request. The entities read during the request are kept in the scope until it ends. The 
+ * rows created during the request are written through the scope's connection, while the 
+ * template changes and the awarded points are collected and written when the scope ends. 
+ * All of them are committed in a single transaction, or rolled back if the request 
+ * fails. The cached state is only updated once the changes have been committed. Outside 
+ * of a scope, each entity is read and written directly.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class RequestScope
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private RequestScope()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Starts a new scope for the current thread. Each call must be followed by a call to 
+	 * {@link #end(boolean)}. If a scope is already open, the inner scope is treated as part 
+	 * of it.
+	 */
+	public static void begin()
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+		{
+			scope = new Scope();
+			currentScope.set(scope);
+		}
+		scope.depth++;
+	}
+	
+	/**
+	 * Ends the current scope. When the outermost scope ends, the collected changes are 
+	 * written to the database and the transaction is committed. The scope is closed, even 
+	 * if the writing fails. The changes are either written all together or not at all. If 
+	 * the request failed at any level of the scope, the transaction is rolled back and the 
+	 * collected changes are discarded instead.
+	 * @param succeeded Did the request finish successfully. If false, this method never 
+	 * throws, so that the original error of the request is preserved.
+	 * @throws HttpException If the changes of a successful request couldn't be written or 
+	 * the cached state couldn't be updated afterwards
+	 */
+	public static void end(boolean succeeded) throws HttpException
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			return;
+		
+		if (!succeeded)
+			scope.failed = true;
+		scope.depth--;
+		if (scope.depth > 0)
+			return;
+		
+		currentScope.remove();
+		
+		if (scope.failed)
+		{
+			scope.rollback();
+			return;
+		}
+		
+		if (scope.connection != null || !scope.changedTemplates.isEmpty() || 
+				!scope.awardedPoints.isEmpty())
+		{
+			try
+			{
+				Connection connection = scope.getConnection();
+				ShoutTemplateEntity.writeLastShoutTimes(connection, 
+						new ArrayList<>(scope.changedTemplates));
+				PointsLedger.award(connection, scope.awardedPoints);
+				
+				connection.commit();
+			}
+			catch (SQLException e)
+			{
+				scope.rollback();
+				throw new InternalServerException("Failed to write the changes", e);
+			}
+			finally
+			{
+				// The pool rolls back the changes that weren't committed
+				scope.close();
+			}
+		}
+		
+		// The cached state is only updated once the changes have been written. Every
+		// action is performed even if some of them fail.
+		PointsLedger.applyToCache(scope.awardedPoints);
+		HttpException firstError = null;
+		for (CommitAction action : scope.commitActions)
+		{
+			try
+			{
+				action.perform();
+			}
+			catch (HttpException e)
+			{
+				if (firstError == null)
+					firstError = e;
+			}
+		}
+		if (firstError != null)
+			throw firstError;
+	}
+	
+	/**
+	 * Finds a template. Within a scope, the template is only read the first time it is 
+	 * requested.
+	 * @param templateID The identifier of the template
+	 * @return The template with the given identifier
+	 * @throws HttpException If the template couldn't be read or found
+	 */
+	public static ShoutTemplateEntity getTemplate(String templateID) throws HttpException
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			return new ShoutTemplateEntity(templateID);
+		
+		ShoutTemplateEntity template = (ShoutTemplateEntity) scope.find(
+				FusrodahTable.TEMPLATES, templateID);
+		if (template == null)
+		{
+			template = new ShoutTemplateEntity(templateID);
+			scope.register(FusrodahTable.TEMPLATES, templateID, template);
+		}
+		
+		return template;
+	}
+	
+	/**
+	 * Finds a victory. Within a scope, the victory is only read the first time it is 
+	 * requested.
+	 * @param victoryID The identifier of the victory
+	 * @return The victory with the given identifier
+	 * @throws HttpException If the victory couldn't be read or found
+	 */
+	public static VictoryEntity getVictory(String victoryID) throws HttpException
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			return new VictoryEntity(victoryID);
+		
+		VictoryEntity victory = (VictoryEntity) scope.find(FusrodahTable.VICTORIES, 
+				victoryID);
+		if (victory == null)
+		{
+			victory = new VictoryEntity(victoryID);
+			scope.register(FusrodahTable.VICTORIES, victoryID, victory);
+		}
+		
+		return victory;
+	}
+	
+	/**
+	 * Provides the connection of the current scope. The connection is opened the first 
+	 * time it is needed and its changes are committed when the scope ends. The connection 
+	 * must not be closed or committed by the caller.
+	 * @return The connection of the current scope. Null if there is no scope.
+	 * @throws SQLException If the connection couldn't be opened
+	 */
+	static Connection getConnection() throws SQLException
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			return null;
+		
+		return scope.getConnection();
+	}
+	
+	/**
+	 * Inserts a new row as a part of the current scope's transaction. The row can't be 
+	 * read through the entities before the scope has ended.
+	 * @param table The table the row is inserted into
+	 * @param values The values of the row, column names used as keys
+	 * @return The identifier of the new row
+	 * @throws HttpException If there is no scope or the row couldn't be inserted
+	 */
+	static String insert(FusrodahTable table, Map<String, String> values) throws HttpException
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			throw new InternalServerException("Rows can only be created within a request");
+		
+		try
+		{
+			String id = FusrodahDatabase.insert(scope.getConnection(), table, values);
+			FusrodahMetrics.countEntityWrite();
+			return id;
+		}
+		catch (SQLException e)
+		{
+			throw new InternalServerException("Failed to write the new " + 
+					table.getTableName(), e);
+		}
+	}
+	
+	/**
+	 * Performs an action once the changes of the current scope have been committed. The 
+	 * action is never performed if the changes are rolled back. Outside of a scope, the 
+	 * action is performed right away.
+	 * @param action The action that updates the cached state after the changes
+	 * @throws HttpException If the action was performed right away and it failed
+	 */
+	static void afterCommit(CommitAction action) throws HttpException
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			action.perform();
+		else
+			scope.commitActions.add(action);
+	}
+	
+	/**
+	 * Marks that a template has changed. Within a scope, the change is written when the 
+	 * scope ends along with the other changes.
+	 * @param template The template that was changed
+	 * @return Was the write deferred to the end of the scope. If false, the template should 
+	 * be written right away.
+	 */
+	static boolean deferWrite(ShoutTemplateEntity template)
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			return false;
+		
+		scope.changedTemplates.add(template);
+		return true;
+	}
+	
+	/**
+	 * Adds points to be awarded. Within a scope, the points are awarded when the scope ends.
+	 * @param increments How many points are given to each user. User ids are used as keys.
+	 * @return Was the award deferred to the end of the scope. If false, the points should 
+	 * be awarded right away.
+	 */
+	static boolean deferAward(Map<String, Integer> increments)
+	{
+		Scope scope = currentScope.get();
+		if (scope == null)
+			return false;
+		
+		for (Map.Entry<String, Integer> increment : increments.entrySet())
+		{
+			Integer previous = scope.awardedPoints.get(increment.getKey());
+			scope.awardedPoints.put(increment.getKey(), previous == null ? 
+					increment.getValue() : previous + increment.getValue());
+		}
+		return true;
+	}
+	
+	
+	// INTERFACES	-----------------------------
+	
+	/**
+	 * These actions update the cached state once the changes of a scope have been 
+	 * committed
+	 * 
+	 * @author Mikko Hilpinen
+	 * @since 17.10.2026
+	 */
+	static interface CommitAction
+	{
+		/**
+		 * Performs the action
+		 * @throws HttpException If the action failed
+		 */
+		public void perform() throws HttpException;
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class Scope
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private int depth;
+		private boolean failed;
+		private final Map<FusrodahTable, Map<String, DatabaseEntity>> entities = 
+				new HashMap<>();
+		private final Set<ShoutTemplateEntity> changedTemplates = new LinkedHashSet<>();
+		private final Map<String, Integer> awardedPoints = new LinkedHashMap<>();
+		private final List<CommitAction> commitActions = new ArrayList<>();
+		private Connection connection;
+		
+		
+		// OTHER METHODS	---------------------
+		
+		public Connection getConnection() throws SQLException
+		{
+			if (this.connection == null)
+			{
+				Connection opened = FusrodahDatabase.openConnection();
+				try
+				{
+					opened.setAutoCommit(false);
+				}
+				catch (SQLException e)
+				{
+					opened.close();
+					throw e;
+				}
+				this.connection = opened;
+			}
+			
+			return this.connection;
+		}
+		
+		public void rollback()
+		{
+			if (this.connection == null)
+				return;
+			
+			try
+			{
+				this.connection.rollback();
+			}
+			catch (SQLException e)
+			{
+				// The pool rolls back the connection when it is returned as well
+			}
+			close();
+		}
+		
+		public void close()
+		{
+			if (this.connection == null)
+				return;
+			
+			try
+			{
+				this.connection.close();
+			}
+			catch (SQLException e)
+			{
+				// The connection is discarded anyway
+			}
+			this.connection = null;
+		}
+		
+		public DatabaseEntity find(FusrodahTable table, String id)
+		{
+			Map<String, DatabaseEntity> tableEntities = this.entities.get(table);
+			if (tableEntities == null)
+				return null;
+			
+			return tableEntities.get(id);
+		}
+		
+		public void register(FusrodahTable table, String id, DatabaseEntity entity)
+		{
+			Map<String, DatabaseEntity> tableEntities = this.entities.get(table);
+			if (tableEntities == null)
+			{
+				tableEntities = new HashMap<>();
+				this.entities.put(table, tableEntities);
+			}
+			tableEntities.put(id, entity);
+		}
+	}
+}
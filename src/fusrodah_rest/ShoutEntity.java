@@ -1,12 +1,15 @@
 package fusrodah_rest;
 
-import java.text.ParseException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import fusrodah_main.FusrodahDatabase;
 import fusrodah_main.FusrodahLoginTable;
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import fusrodah_main.Location;
 import nexus_http.ForbiddenActionException;
@@ -19,9 +22,7 @@ import nexus_http.NotFoundException;
 import nexus_rest.RestEntity;
 import nexus_rest.RestEntityList;
 import nexus_rest.SimpleRestData;
-import nexus_rest.SimpleRestEntityLinkList;
 import alliance_rest.DatabaseEntity;
-import alliance_util.SimpleDate;
 
 /**
  * This entity represents a single "shout" created by a user
@@ -42,6 +43,16 @@ public class ShoutEntity extends DatabaseEntity
 	 * How long the shout can be shouted forward after it has been shouted last. In minutes.
 	 */
 	public static final int SHOUT_CAN_BE_SHOUTED_DURATION = 45;
+	/**
+	 * How far a shout can reach at most. In metres.
+	 */
+	public static final double MAXIMUM_REACH = 1000;
+	
+	private static final long MINUTE_MILLIS = 60 * 1000;
+	
+	private final long creationMillis;
+	private Location location;
+	private volatile ShouterChain shouterChain;
 	
 	
 	// CONSTRUCTOR	-----------------------------
@@ -54,37 +65,9 @@ public class ShoutEntity extends DatabaseEntity
 	public ShoutEntity(String id) throws HttpException
 	{
 		super(new SimpleRestData(), ROOTPATH, FusrodahTable.SHOUTS, id);
-	}
-
-	/**
-	 * Creates a new shoutEntity with the given parameters. The entity must be based on another 
-	 * shout.
-	 * @param parent The entity that creates this entity
-	 * @param parameters The parameters provided by the client.
-	 * @throws HttpException If the shout couldn't be created
-	 */
-	public ShoutEntity(RestEntity parent, Map<String, String> parameters) throws HttpException
-	{
-		super(new SimpleRestData(), parent, FusrodahTable.SHOUTS, 
-				checkShoutParameters(parameters), new HashMap<>());
+		FusrodahMetrics.countEntityLoad();
 		
-		// Checks if the shout reached its goal. If so, creates a new victory
-		if (reaches(getTemplate().getEndLocation()))
-			new VictoryEntity(this);
-	}
-	
-	/**
-	 * Creates a new shoutEntity with the given parameters. The entity must be the first shout 
-	 * created when a new template is created.
-	 * @param template The template that creates this entity
-	 * @param parameters The parameters provided by the client.
-	 * @throws HttpException If the shout couldn't be created
-	 */
-	public ShoutEntity(ShoutTemplateEntity template, Map<String, String> parameters) throws 
-			HttpException
-	{
-		super(new SimpleRestData(), template, FusrodahTable.SHOUTS, 
-				checkTemplateParameters(parameters, template), new HashMap<>());
+		this.creationMillis = Long.parseLong(getAttributes().get("created"));
 	}
 	
 	
@@ -129,83 +112,120 @@ public class ShoutEntity extends DatabaseEntity
 	
 	// OTHER METHODS	----------------------------------
 	
+	/**
+	 * Creates a new shout based on another shout. If the shout reaches its goal, a victory 
+	 * is created as well. The shout is written as a part of the request scope's 
+	 * transaction and can be read once the scope has ended.
+	 * @param parameters The parameters provided by the client
+	 * @return The identifier of the new shout
+	 * @throws HttpException If the shout couldn't be created
+	 */
+	public static String create(Map<String, String> parameters) throws HttpException
+	{
+		long nowMillis = System.currentTimeMillis();
+		parameters = checkShoutParameters(parameters, nowMillis);
+		
+		ShoutEntity lastShout = LiveShoutStore.getShout(parameters.get("parentID"));
+		String shoutID = insert(parameters);
+		
+		// Checks if the shout reached its goal. If so, creates a new victory
+		ShoutTemplateEntity template = RequestScope.getTemplate(parameters.get("templateID"));
+		if (new Location(parameters.get("location")).isWithin(template.getEndLocation(), 
+				MAXIMUM_REACH))
+			VictoryEntity.create(template, new ShouterChain(lastShout.getShouterChain(), 
+					Long.parseLong(parameters.get("shouterID"))), nowMillis);
+		
+		return shoutID;
+	}
+	
+	/**
+	 * Creates the first shout of a new template. The shout is written as a part of the 
+	 * request scope's transaction, along with the template.
+	 * @param templateID The identifier of the new template
+	 * @param template The values of the new template. The parameters provided by the 
+	 * client are included.
+	 * @return The identifier of the new shout
+	 * @throws HttpException If the shout couldn't be created
+	 */
+	static String createFirst(String templateID, Map<String, String> template) throws 
+			HttpException
+	{
+		return insert(checkTemplateParameters(template, templateID));
+	}
+	
 	/**
 	 * @return The template associated with this shout
 	 * @throws HttpException If the template couldn't be read
 	 */
 	public ShoutTemplateEntity getTemplate() throws HttpException
 	{
-		return new ShoutTemplateEntity(getAttributes().get("templateID"));
+		return RequestScope.getTemplate(getTemplateID());
 	}
 	
 	/**
-	 * @return The moment when the shout was first shouted
-	 * @throws HttpException If the time couldn't be read
+	 * @return The identifier of the template associated with this shout
 	 */
-	public SimpleDate getShoutTime() throws HttpException
+	public String getTemplateID()
 	{
-		try
-		{
-			return new SimpleDate(getAttributes().get("created"));
-		}
-		catch (ParseException e)
-		{
-			throw new InternalServerException("Failed to check shout creation time", e);
-		}
+		return getAttributes().get("templateID");
+	}
+	
+	/**
+	 * @return The moment when the shout was first shouted, in milliseconds
+	 */
+	public long getCreationMillis()
+	{
+		return this.creationMillis;
 	}
 	
 	/**
 	 * Checks whether the shout should be presented
 	 * @param location The location at which the shout might be heard
 	 * @param userID The user that might hear the shout
+	 * @param nowMillis The current time in milliseconds
 	 * @return Should the user hear the shout at the given location
 	 * @throws HttpException If the operation failed
 	 */
-	public boolean isValidFor(Location location, String userID) throws HttpException
+	public boolean isValidFor(Location location, String userID, long nowMillis) throws 
+			HttpException
 	{
-		return canBeHeardBy(userID) && reaches(location);
+		return canBeHeardBy(userID, nowMillis) && reaches(location);
 	}
 	
 	/**
 	 * This method checks whether the given user can hear this shout
 	 * @param userID The identifier of the user that might hear the shout
+	 * @param nowMillis The current time in milliseconds
 	 * @return Can the user hear the shout
 	 * @throws HttpException If the operation failed
 	 */
-	public boolean canBeHeardBy(String userID) throws HttpException
+	public boolean canBeHeardBy(String userID, long nowMillis) throws HttpException
 	{
-		if (!canBeHeard())
+		if (!canBeHeard(nowMillis))
 			return false;
 		
-		String[] shouterIDs = getShouterIds();
-		
-		for (int i = 0; i < shouterIDs.length; i++)
-		{
-			if (shouterIDs[i].equals(userID))
-				return false;
-		}
-		
-		return true;
+		return !getShouterChain().contains(userID);
 	}
 	
 	/**
+	 * @param nowMillis The current time in milliseconds
 	 * @return Can the shout still be heard at all
-	 * @throws HttpException If the shout creation time couldn't be determined
+	 * @throws HttpException If the shout's template couldn't be read
 	 */
-	public boolean canBeHeard() throws HttpException
+	public boolean canBeHeard(long nowMillis) throws HttpException
 	{
 		// Too old shouts can't be heard, neither can completed shouts
-		return getShoutTime().plus(SHOUT_CAN_BE_HEARD_DURATION).isPast(new SimpleDate()) && 
-				!getTemplate().isCompleted();
+		return nowMillis < this.creationMillis + SHOUT_CAN_BE_HEARD_DURATION * MINUTE_MILLIS && 
+				!LiveShoutStore.templateIsCompleted(getTemplateID());
 	}
 	
 	/**
+	 * @param nowMillis The current time in milliseconds
 	 * @return Can the shout still be shouted forward
-	 * @throws HttpException If the shout creation time couldn't be determined
 	 */
-	public boolean canBeReshouted() throws HttpException
+	public boolean canBeReshouted(long nowMillis)
 	{
-		return getShoutTime().plus(SHOUT_CAN_BE_SHOUTED_DURATION).isPast(new SimpleDate());
+		return nowMillis < this.creationMillis + SHOUT_CAN_BE_SHOUTED_DURATION * MINUTE_MILLIS;
 	}
 	
 	/**
@@ -213,8 +233,8 @@ public class ShoutEntity extends DatabaseEntity
 	 */
 	public double getReach()
 	{
-		// TODO: Create a better version at some point
-		return 1000;
+		// TODO: Create a better version at some point (must not exceed MAXIMUM_REACH)
+		return MAXIMUM_REACH;
 	}
 	
 	/**
@@ -222,7 +242,11 @@ public class ShoutEntity extends DatabaseEntity
 	 */
 	public Location getLocation()
 	{
-		return new Location(getAttributes().get("location"));
+		// The location is only parsed once
+		if (this.location == null)
+			this.location = new Location(getAttributes().get("location"));
+		
+		return this.location;
 	}
 	
 	/**
@@ -232,21 +256,37 @@ public class ShoutEntity extends DatabaseEntity
 	 */
 	public boolean reaches(Location location)
 	{
-		return getLocation().getDistanceFrom(location) < getReach();
+		return getLocation().isWithin(location, getReach());
 	}
 	
 	/**
-	 * @return The ids of the shouters that have contirbuted to this shout
+	 * @return The identifier of the shout this shout was shouted forward from. -1 if this 
+	 * was the first shout of the template.
 	 */
-	public String[] getShouterIds()
+	public String getParentID()
 	{
-		return getAttributes().get("shouterIDs").split("\\+");
+		return getAttributes().get("parentID");
 	}
 	
-	private static Map<String, String> checkShoutParameters(Map<String, String> parameters) throws 
-			HttpException
+	/**
+	 * Finds the shouters that have contributed to this shout. The previous shouts are only 
+	 * read the first time the chain is needed. The live previous shouts are taken from 
+	 * memory while the rest are read from the database with a single query.
+	 * @return The shouters that have contributed to this shout
+	 * @throws HttpException If the previous shouts couldn't be read
+	 */
+	public ShouterChain getShouterChain() throws HttpException
+	{
+		if (this.shouterChain != null)
+			return this.shouterChain;
+		
+		return ShouterChain.resolve(getDatabaseID(), new AncestorLinks(this));
+	}
+
+	private static Map<String, String> checkShoutParameters(Map<String, String> parameters, 
+			long nowMillis) throws HttpException
 	{
-		parameters = checkCommonParameters(parameters);
+		parameters = checkCommonParameters(parameters, nowMillis);
 		
 		// Checks that the given location is valid
 		if (!parameters.containsKey("location"))
@@ -255,80 +295,231 @@ public class ShoutEntity extends DatabaseEntity
 		if (!parameters.containsKey("lastShoutID"))
 			throw new InvalidParametersException("Parameter 'lastShoutID' required");
 		
-		ShoutEntity lastShout = new ShoutEntity(parameters.get("lastShoutID"));
+		ShoutEntity lastShout = LiveShoutStore.getShout(parameters.get("lastShoutID"));
 		
 		// Checks that the last shout can still be reshouted
-		if (!lastShout.canBeReshouted())
+		if (!lastShout.canBeReshouted(nowMillis))
 			throw new ForbiddenActionException(
 					"The provided shout can no longer be reshouted");
 		
 		Map<String, String> lastShoutData = lastShout.getAttributes();
 		
-		parameters.put("shouterIDs", lastShoutData.get("shouterIDs") + "+" + 
-				parameters.get("shouterID"));
+		// The new shout continues the last shout's chain
+		parameters.put("parentID", lastShout.getDatabaseID());
 		
 		// Uses the same template, but also updates the template's last shout time
 		parameters.put("templateID", lastShoutData.get("templateID"));
 		
 		// Checks that the template exists and can be shouted forward. Also updates the last 
 		// shout time
-		ShoutTemplateEntity template = 
-				new ShoutTemplateEntity(parameters.get("templateID"));
-		if (!template.canBeShouted())
+		ShoutTemplateEntity template = RequestScope.getTemplate(parameters.get("templateID"));
+		if (!template.canBeShouted(nowMillis))
 			throw new ForbiddenActionException("The provided template can no longer be used");
-		template.updateLastShoutTime(new SimpleDate());
+		template.updateLastShoutTime(nowMillis);
 		
 		return parameters;
 	}
 	
-	private static Map<String, String> checkTemplateParameters(Map<String, String> parameters, 
-			ShoutTemplateEntity template) throws HttpException
+	private static Map<String, String> checkTemplateParameters(Map<String, String> template, 
+			String templateID) throws HttpException
 	{
-		parameters.put("shouterID", template.getAttributes().get("senderID"));
-		parameters.put("shouterIDs", parameters.get("shouterID"));
-		parameters.put("templateID", template.getDatabaseID());
-		parameters.put("location", template.getAttributes().get("startLocation"));
+		template.put("shouterID", template.get("senderID"));
+		template.put("parentID", "-1");
+		template.put("templateID", templateID);
+		template.put("location", template.get("startLocation"));
 		
-		return checkCommonParameters(parameters);
+		// The shout is created at the same moment as the template
+		return checkCommonParameters(template, Long.parseLong(template.get("lastShoutTime")));
 	}
 	
-	private static Map<String, String> checkCommonParameters(Map<String, String> parameters) 
-			throws HttpException
+	private static Map<String, String> checkCommonParameters(Map<String, String> parameters, 
+			final long nowMillis) throws HttpException
 	{
 		if (!parameters.containsKey("shouterID"))
 			throw new InvalidParametersException("Parameter 'shouterID' required");
 		
 		// The shouter must be an existing user
-		UserEntity shouter = new UserEntity(parameters.get("shouterID"));
+		UserEntity shouter = UserCache.getUser(parameters.get("shouterID"));
 		
 		// Also checks for authorization
 		FusrodahLoginTable.checkUserKey(shouter.getDatabaseID(), parameters);
 		
 		// Checks if the shouter can shout at this time
-		if (!shouter.canShout())
+		if (!shouter.canShout(nowMillis))
 			throw new ForbiddenActionException("The user can't shout yet due to cooldown.");
 		
-		// Updates the shouter location and shout time
-		shouter.updateLocation(new Location(parameters.get("location")));
-		shouter.updateLastShoutTime();
+		// Updates the shouter location and shout time once the shout has been written
+		final UserEntity updatedShouter = shouter;
+		final Location location = new Location(parameters.get("location"));
+		RequestScope.afterCommit(new RequestScope.CommitAction()
+		{
+			@Override
+			public void perform()
+			{
+				updatedShouter.updateLocation(location);
+				updatedShouter.updateLastShoutTime(nowMillis);
+			}
+		});
 		
 		// Adds the "created" parameter itself
-		parameters.put("created", new SimpleDate().toString());
+		parameters.put("created", String.valueOf(nowMillis));
 		
 		return parameters;
 	}
 	
+	private static String insert(Map<String, String> values) throws HttpException
+	{
+		final String shoutID = RequestScope.insert(FusrodahTable.SHOUTS, values);
+		
+		// The new shout is read to the live shouts once it has been written
+		RequestScope.afterCommit(new RequestScope.CommitAction()
+		{
+			@Override
+			public void perform() throws HttpException
+			{
+				LiveShoutStore.getShout(shoutID);
+			}
+		});
+		
+		return shoutID;
+	}
+	
 	private RestEntityList getShouters() throws HttpException
 	{
-		// Parses the ids from the shouterIDs
-		String[] shouterIDs = getShouterIds();
-		List<RestEntity> shouters = new ArrayList<>();
+		List<String> shouterIDs = new ArrayList<>();
+		for (long shouterID : getShouterChain().getShouterIDs())
+		{
+			shouterIDs.add(String.valueOf(shouterID));
+		}
+		
+		// The shouters are read all at once when the list is used
+		return new UserLinkList("shouters", this, shouterIDs);
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	// Connects the shouts by their identifiers. The live shouts are found from the live
+	// shout store. If an older shout is needed, every earlier shout of the template is read
+	// at once, since the previous shouts are always among them.
+	private static class AncestorLinks implements ShouterChain.ShoutLinks<String>
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final ShoutEntity shout;
+		private Map<String, Map<String, String>> earlierRows;
+		
+		
+		// CONSTRUCTOR	-------------------------
 		
-		for (int i = 0; i < shouterIDs.length; i++)
+		public AncestorLinks(ShoutEntity shout)
 		{
-			shouters.add(new UserEntity(shouterIDs[i]));
+			this.shout = shout;
 		}
 		
-		return new SimpleRestEntityLinkList("shouters", this, shouters);
+		
+		// IMPLEMENTED METHODS	-----------------
+		
+		@Override
+		public ShouterChain getKnownChain(String shoutID)
+		{
+			ShoutEntity entity = getEntity(shoutID);
+			if (entity == null)
+				return null;
+			
+			return entity.shouterChain;
+		}
+		
+		@Override
+		public void setChain(String shoutID, ShouterChain chain)
+		{
+			// The chains of the database rows don't need to be stored
+			ShoutEntity entity = getEntity(shoutID);
+			if (entity != null)
+				entity.shouterChain = chain;
+		}
+		
+		@Override
+		public String getParent(String shoutID) throws HttpException
+		{
+			String parentID = getAttributes(shoutID).get("parentID");
+			if (parentID == null || parentID.equals("-1"))
+				return null;
+			
+			// The earlier shouts are read the first time a shout is missing from memory
+			if (getEntity(parentID) == null && this.earlierRows == null)
+				this.earlierRows = readEarlierShouts();
+			
+			return parentID;
+		}
+		
+		@Override
+		public long getShouterID(String shoutID)
+		{
+			try
+			{
+				return Long.parseLong(getAttributes(shoutID).get("shouterID"));
+			}
+			catch (HttpException e)
+			{
+				// The shouts are always found before their shouter ids are needed
+				throw new IllegalStateException("The shout " + shoutID + 
+						" wasn't found", e);
+			}
+		}
+		
+		
+		// OTHER METHODS	---------------------
+		
+		private ShoutEntity getEntity(String shoutID)
+		{
+			if (shoutID.equals(this.shout.getDatabaseID()))
+				return this.shout;
+			
+			return LiveShoutStore.getLiveShout(shoutID);
+		}
+		
+		private Map<String, String> getAttributes(String shoutID) throws HttpException
+		{
+			ShoutEntity entity = getEntity(shoutID);
+			if (entity != null)
+				return entity.getAttributes();
+			
+			if (this.earlierRows != null)
+			{
+				Map<String, String> row = this.earlierRows.get(shoutID);
+				if (row != null)
+					return row;
+			}
+			
+			throw new NotFoundException(ROOTPATH + shoutID);
+		}
+		
+		private Map<String, Map<String, String>> readEarlierShouts() throws HttpException
+		{
+			List<String> conditions = new ArrayList<>();
+			conditions.add("templateID = ?");
+			conditions.add("id < ?");
+			List<Object> conditionValues = new ArrayList<>();
+			conditionValues.add(Long.valueOf(this.shout.getTemplateID()));
+			conditionValues.add(Long.valueOf(this.shout.getDatabaseID()));
+			
+			Map<String, Map<String, String>> rows = new HashMap<>();
+			try (Connection connection = FusrodahDatabase.openConnection())
+			{
+				for (Map<String, String> row : FusrodahDatabase.selectWhere(connection, 
+						FusrodahTable.SHOUTS, conditions, conditionValues))
+				{
+					rows.put(row.get("id"), row);
+				}
+			}
+			catch (SQLException e)
+			{
+				throw new InternalServerException("Couldn't read the previous shouts", e);
+			}
+			
+			FusrodahMetrics.countEntityLoad();
+			return rows;
+		}
 	}
 }
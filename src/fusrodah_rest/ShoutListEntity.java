@@ -1,27 +1,23 @@
 package fusrodah_rest;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import vault_database.DatabaseUnavailableException;
 import flow_recording.ObjectFormatException;
 import fusrodah_main.FusrodahLoginTable;
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import fusrodah_main.Location;
 import nexus_http.ForbiddenActionException;
 import nexus_http.HttpException;
-import nexus_http.InternalServerException;
 import nexus_http.InvalidParametersException;
 import nexus_http.MethodNotSupportedException;
 import nexus_http.MethodType;
-import nexus_http.NotFoundException;
 import nexus_rest.ImmutableRestData;
 import nexus_rest.RestEntity;
 import nexus_rest.RestEntityLinkList;
-import alliance_rest.DatabaseEntityTable;
 import alliance_rest.DatabaseTableEntity;
 
 /**
@@ -49,13 +45,44 @@ public class ShoutListEntity extends DatabaseTableEntity
 	@Override
 	protected RestEntity loadEntityWithID(String id) throws HttpException
 	{
-		return new ShoutEntity(id);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			return LiveShoutStore.getShout(id);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("get_shout", "GET root/shouts/{id}", started);
+		}
 	}
 
 	@Override
 	public RestEntity Post(Map<String, String> parameters) throws HttpException
 	{
-		return new ShoutEntity(this, parameters);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			// The shout, the template and the victory are written in the same transaction
+			RequestScope.begin();
+			boolean succeeded = false;
+			String shoutID;
+			try
+			{
+				shoutID = ShoutEntity.create(parameters);
+				succeeded = true;
+			}
+			finally
+			{
+				RequestScope.end(succeeded);
+			}
+			
+			// The shout can only be read once it has been written
+			return LiveShoutStore.getShout(shoutID);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("post_shouts", "POST root/shouts", started);
+		}
 	}
 
 	@Override
@@ -86,10 +113,10 @@ public class ShoutListEntity extends DatabaseTableEntity
 	protected Map<String, RestEntity> getMissingEntities(Map<String, String> parameters) 
 			throws HttpException
 	{
-		Map<String, RestEntity> entities = super.getMissingEntities(parameters);
-		if (entities == null)
-			entities = new HashMap<>();
-		
+		// Only a single page of shouts is listed at a time. The shouts can be filtered by
+		// their template and shouter.
+		Map<String, RestEntity> entities = TablePage.read(this, FusrodahTable.SHOUTS, 
+				parameters, new String[] {"templateID", "shouterID"}, new String[0]);
 		entities.put("best", new BestShoutList(this, parameters));
 		
 		return entities;
@@ -105,6 +132,9 @@ public class ShoutListEntity extends DatabaseTableEntity
 		private List<RestEntity> bestEntities;
 		private UserEntity user;
 		private Location location;
+		private ShoutScorer scorer;
+		// The same moment is used for every check during the request
+		private long nowMillis;
 		
 		
 		// CONSTRUCTOR	----------------------------
@@ -115,6 +145,7 @@ public class ShoutListEntity extends DatabaseTableEntity
 			super("best", parent);
 			
 			this.bestEntities = null;
+			this.nowMillis = System.currentTimeMillis();
 			
 			// Checks the parameters ('userID' and 'location') required
 			if (!parameters.containsKey("userID") || !parameters.containsKey("location"))
@@ -122,7 +153,7 @@ public class ShoutListEntity extends DatabaseTableEntity
 						"Parameters 'userID' and 'location' required");
 			
 			// Checks that the user is valid
-			this.user = new UserEntity(parameters.get("userID"));
+			this.user = UserCache.getUser(parameters.get("userID"));
 			try
 			{
 				this.location = new Location(parameters.get("location"));
@@ -132,11 +163,14 @@ public class ShoutListEntity extends DatabaseTableEntity
 				throw new InvalidParametersException(e.getMessage());
 			}
 			
+			// The client may specify the amount of shouts and how they are ranked
+			this.scorer = new ShoutScorer(parameters);
+			
 			// And checks for authorization
 			FusrodahLoginTable.checkUserKey(this.user.getDatabaseID(), parameters);
 			
 			// Checks if the user is still on cooldown
-			if (!this.user.canShout())
+			if (!this.user.canShout(this.nowMillis))
 				throw new ForbiddenActionException("The user is still on a cooldown period.");
 			
 			// Also updates user location
@@ -152,10 +186,29 @@ public class ShoutListEntity extends DatabaseTableEntity
 			// If the entities haven't bee requested yet, finds them
 			if (this.bestEntities == null)
 			{
-				List<ShoutEntity> bestShouts = findBestShouts(this.location, 
-						this.user.getDatabaseID());
-				this.bestEntities = new ArrayList<>();
-				this.bestEntities.addAll(bestShouts);
+				long started = FusrodahMetrics.startRequest();
+				try
+				{
+					RequestScope.begin();
+					boolean succeeded = false;
+					try
+					{
+						List<ShoutEntity> bestShouts = findBestShouts(this.location, 
+								this.user.getDatabaseID(), this.scorer, this.nowMillis);
+						this.bestEntities = new ArrayList<>();
+						this.bestEntities.addAll(bestShouts);
+						succeeded = true;
+					}
+					finally
+					{
+						RequestScope.end(succeeded);
+					}
+				}
+				finally
+				{
+					FusrodahMetrics.endRequest("get_best_shouts", "GET root/shouts/best", 
+							started);
+				}
 			}
 			
 			return this.bestEntities;
@@ -170,69 +223,21 @@ public class ShoutListEntity extends DatabaseTableEntity
 		
 		// OTHER METHODS	-------------------------
 		
-		private static List<ShoutEntity> findBestShouts(Location location, String userID) 
-				throws HttpException
+		private static List<ShoutEntity> findBestShouts(Location location, String userID, 
+				ShoutScorer scorer, long nowMillis) throws HttpException
 		{
-			try
-			{
-				// Finds all possible shoutIDs
-				List<String> shoutIDs = DatabaseEntityTable.findMatchingIDs(
-						FusrodahTable.SHOUTS, new String[0], new String[0]);
-				
-				List<ShoutEntity> bestShouts = new ArrayList<>();
-				
-				// Goes through the shouts
-				for (String shoutID : shoutIDs)
-				{
-					ShoutEntity shout = new ShoutEntity(shoutID);
-					
-					// Checks if the shout can be heard at all
-					if (!shout.isValidFor(location, userID))
-						continue;
-					
-					// Tries to place the shout to the list of best shouts
-					for (int i = 0; i < 3; i++)
-					{
-						if (bestShouts.size() <= i)
-						{
-							bestShouts.add(shout);
-							break;
-						}
-						else if (shoutIsBetterThanAnother(shout, bestShouts.get(i)))
-						{
-							bestShouts.add(i, shout);
-							
-							if (i == 2 || bestShouts.size() > 3)
-								bestShouts.remove(3);
-							
-							break;
-						}
-					}
-				}
-				
-				return bestShouts;
-			}
-			catch (DatabaseUnavailableException | SQLException e)
-			{
-				throw new InternalServerException("Couldn't read the shout IDs", e);
-			}
-			catch (NotFoundException e)
+			List<ShoutEntity> candidates = new ArrayList<>();
+			
+			// Only goes through the live shouts that are close enough to the location
+			for (ShoutEntity shout : LiveShoutStore.findHearableShoutsNear(location, 
+					nowMillis))
 			{
-				throw new InternalServerException("Couldn't create a shout", e);
+				// Checks if the shout can be heard by this user at this location
+				if (shout.isValidFor(location, userID, nowMillis))
+					candidates.add(shout);
 			}
-		}
-		
-		private static boolean shoutIsBetterThanAnother(ShoutEntity shout, 
-				ShoutEntity another) throws HttpException
-		{
-			// TODO: Implement this (Also, this may be better at the shout class body)
-			// Things to consider:
-			// - Number of shouters
-			// - Last shout time
-			// - Direction
-			// - Distance
-			// - % complete
-			return another.getShoutTime().isPast(shout.getShoutTime());
+			
+			return scorer.selectBest(candidates, location, nowMillis);
 		}
 	}
 }
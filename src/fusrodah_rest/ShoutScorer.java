@@ -0,0 +1,307 @@
+package fusrodah_rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import fusrodah_main.Location;
+import nexus_http.HttpException;
+import nexus_http.InvalidParametersException;
+
+/**
+ * ShoutScorer ranks the shouts a user could hear. Each candidate shout gets a single score 
+ * that is a weighted sum of the following factors, each between 0 and 1: 
+ * <ul> 
+ * <li>shouters: how many users have already shouted the shout forward</li> 
+ * <li>recency: how recently the shout was shouted</li> 
+ * <li>direction: how well the listener lies in the direction of the shout's goal</li> 
+ * <li>distance: how far from the shout's origin the listener is</li> 
+ * <li>progress: how much of the distance to the goal the shout has already travelled</li> 
+ * </ul> 
+ * The weights can be provided by the client with parameters named after the factors, for 
+ * example 'directionWeight'.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class ShoutScorer
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How many shouts are selected when the client doesn't specify the amount
+	 */
+	public static final int DEFAULT_AMOUNT = 3;
+	/**
+	 * How many shouts can be selected at most
+	 */
+	public static final int MAXIMUM_AMOUNT = 50;
+	
+	private static final long MINUTE_MILLIS = 60 * 1000;
+	
+	private final double shouterWeight, recencyWeight, directionWeight, distanceWeight, 
+			progressWeight;
+	private final int amount;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new scorer with the default weights
+	 */
+	public ShoutScorer()
+	{
+		this.shouterWeight = 1;
+		this.recencyWeight = 1;
+		this.directionWeight = 2;
+		this.distanceWeight = 1;
+		this.progressWeight = 1;
+		this.amount = DEFAULT_AMOUNT;
+	}
+	
+	/**
+	 * Creates a new scorer that uses the weights and the amount provided by the client. 
+	 * The default values are used for the missing parameters.
+	 * @param parameters The parameters provided by the client
+	 * @throws HttpException If the parameters were malformed
+	 */
+	public ShoutScorer(Map<String, String> parameters) throws HttpException
+	{
+		ShoutScorer defaults = new ShoutScorer();
+		
+		this.shouterWeight = parseWeight(parameters, "shouterWeight", defaults.shouterWeight);
+		this.recencyWeight = parseWeight(parameters, "recencyWeight", defaults.recencyWeight);
+		this.directionWeight = parseWeight(parameters, "directionWeight", 
+				defaults.directionWeight);
+		this.distanceWeight = parseWeight(parameters, "distanceWeight", 
+				defaults.distanceWeight);
+		this.progressWeight = parseWeight(parameters, "progressWeight", 
+				defaults.progressWeight);
+		
+		if (parameters.containsKey("amount"))
+		{
+			try
+			{
+				this.amount = Integer.parseInt(parameters.get("amount"));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new InvalidParametersException("Parameter 'amount' must be an integer");
+			}
+			
+			if (this.amount < 1 || this.amount > MAXIMUM_AMOUNT)
+				throw new InvalidParametersException("Parameter 'amount' must be between 1 and "
+						+ MAXIMUM_AMOUNT);
+		}
+		else
+			this.amount = defaults.amount;
+	}
+	
+	
+	// GETTERS & SETTERS	---------------------
+	
+	/**
+	 * @return How many shouts are selected
+	 */
+	public int getAmount()
+	{
+		return this.amount;
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Selects the best shouts from the candidates. The scores are calculated once for each 
+	 * candidate and only the best ones are kept during the selection.
+	 * @param candidates The shouts the selection is made from
+	 * @param listenerLocation The location of the user who would hear the shouts
+	 * @param nowMillis The current time
+	 * @return The best shouts, the best one first
+	 * @throws HttpException If the shouts couldn't be scored
+	 */
+	public List<ShoutEntity> selectBest(List<ShoutEntity> candidates, 
+			final Location listenerLocation, final long nowMillis) throws HttpException
+	{
+		return selectBest(candidates, new CandidateScore<ShoutEntity>()
+		{
+			@Override
+			public double score(ShoutEntity candidate) throws HttpException
+			{
+				return ShoutScorer.this.score(candidate, listenerLocation, nowMillis);
+			}
+		});
+	}
+	
+	/**
+	 * Selects the best candidates. The scores are calculated once for each candidate and 
+	 * only the best ones are kept during the selection.
+	 * @param candidates The candidates the selection is made from
+	 * @param candidateScore Calculates the score of each candidate
+	 * @return The best candidates, the best one first
+	 * @throws HttpException If the candidates couldn't be scored
+	 */
+	public <T> List<T> selectBest(List<T> candidates, CandidateScore<T> candidateScore)
+			throws HttpException
+	{
+		// The heap keeps the worst selected candidate on top
+		PriorityQueue<ScoredCandidate<T>> best = new PriorityQueue<>(this.amount + 1);
+		for (T candidate : candidates)
+		{
+			double score = candidateScore.score(candidate);
+			
+			if (best.size() < this.amount)
+				best.add(new ScoredCandidate<>(candidate, score));
+			else if (score > best.peek().score)
+			{
+				best.poll();
+				best.add(new ScoredCandidate<>(candidate, score));
+			}
+		}
+		
+		List<ScoredCandidate<T>> sorted = new ArrayList<>(best);
+		Collections.sort(sorted, Collections.reverseOrder());
+		
+		List<T> selected = new ArrayList<>(sorted.size());
+		for (ScoredCandidate<T> scored : sorted)
+		{
+			selected.add(scored.candidate);
+		}
+		
+		return selected;
+	}
+	
+	/**
+	 * Calculates the score of a single shout
+	 * @param shout The shout that is scored
+	 * @param listenerLocation The location of the user who would hear the shout
+	 * @param nowMillis The current time
+	 * @return The score of the shout. The higher, the better.
+	 * @throws HttpException If the shout's template couldn't be read
+	 */
+	public double score(ShoutEntity shout, Location listenerLocation, long nowMillis)
+			throws HttpException
+	{
+		return score(shout.getShouterChain().getLength(), 
+				nowMillis - shout.getCreationMillis(), shout.getLocation(), shout.getReach(), 
+				LiveShoutStore.getTemplateStartLocation(shout.getTemplateID()), 
+				LiveShoutStore.getTemplateEndLocation(shout.getTemplateID()), listenerLocation);
+	}
+	
+	/**
+	 * Calculates the score of a shout from its properties
+	 * @param shouterAmount How many users have shouted the shout
+	 * @param ageMillis How long ago the shout was shouted
+	 * @param origin The location where the shout was shouted
+	 * @param reach How far the shout reaches
+	 * @param start The location where the shout's template was started
+	 * @param goal The location the shout's template is trying to reach
+	 * @param listenerLocation The location of the user who would hear the shout
+	 * @return The score of the shout. The higher, the better.
+	 */
+	public double score(int shouterAmount, double ageMillis, Location origin, double reach, 
+			Location start, Location goal, Location listenerLocation)
+	{
+		double shouters = 1 - 1.0 / shouterAmount;
+		
+		double recency = 1 - clamp(ageMillis / (ShoutEntity.SHOUT_CAN_BE_HEARD_DURATION * 
+				MINUTE_MILLIS));
+		
+		double directionDifference = Math.toRadians(origin.getDirectionTowards(goal) - 
+				origin.getDirectionTowards(listenerLocation));
+		double direction = (1 + Math.cos(directionDifference)) / 2;
+		
+		double distance = clamp(origin.getDistanceFrom(listenerLocation) / reach);
+		
+		double totalDistance = start.getDistanceFrom(goal);
+		double progress = 1;
+		if (totalDistance > 0)
+			progress = 1 - clamp(origin.getDistanceFrom(goal) / totalDistance);
+		
+		return this.shouterWeight * shouters + this.recencyWeight * recency + 
+				this.directionWeight * direction + this.distanceWeight * distance + 
+				this.progressWeight * progress;
+	}
+	
+	private static double clamp(double value)
+	{
+		if (value < 0)
+			return 0;
+		if (value > 1)
+			return 1;
+		return value;
+	}
+	
+	private static double parseWeight(Map<String, String> parameters, String parameterName, 
+			double defaultWeight) throws HttpException
+	{
+		if (!parameters.containsKey(parameterName))
+			return defaultWeight;
+		
+		double weight;
+		try
+		{
+			weight = Double.parseDouble(parameters.get(parameterName));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new InvalidParametersException("Parameter '" + parameterName + 
+					"' must be a number");
+		}
+		
+		// NaN or infinite weights would break the ordering of the scores
+		if (Double.isNaN(weight) || Double.isInfinite(weight) || weight < 0)
+			throw new InvalidParametersException("Parameter '" + parameterName + 
+					"' must be a finite, non-negative number");
+		
+		return weight;
+	}
+	
+	
+	// INTERFACES	-----------------------------
+	
+	/**
+	 * CandidateScore calculates the scores of the candidates during a selection
+	 * @param <T> The type of the scored candidates
+	 */
+	public static interface CandidateScore<T>
+	{
+		/**
+		 * @param candidate The candidate that is scored
+		 * @return The score of the candidate. The higher, the better.
+		 * @throws HttpException If the candidate couldn't be scored
+		 */
+		public double score(T candidate) throws HttpException;
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class ScoredCandidate<T> implements Comparable<ScoredCandidate<T>>
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final T candidate;
+		private final double score;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public ScoredCandidate(T candidate, double score)
+		{
+			this.candidate = candidate;
+			this.score = score;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----------------
+		
+		@Override
+		public int compareTo(ScoredCandidate<T> other)
+		{
+			return Double.compare(this.score, other.score);
+		}
+	}
+}
@@ -1,14 +1,17 @@
 package fusrodah_rest;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import vault_database.DatabaseAccessor;
-import vault_database.DatabaseUnavailableException;
 import flow_recording.ObjectFormatException;
+import fusrodah_main.FusrodahDatabase;
 import fusrodah_main.FusrodahLoginTable;
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import fusrodah_main.Location;
 import nexus_http.HttpException;
@@ -20,7 +23,6 @@ import nexus_http.NotFoundException;
 import nexus_rest.RestEntity;
 import nexus_rest.SimpleRestData;
 import alliance_rest.DatabaseEntity;
-import alliance_util.SimpleDate;
 
 /**
  * This entity represents a shout template
@@ -45,27 +47,7 @@ public class ShoutTemplateEntity extends DatabaseEntity
 	public ShoutTemplateEntity(String id) throws HttpException
 	{
 		super(new SimpleRestData(), ROOTPATH, FusrodahTable.TEMPLATES, id);
-	}
-
-	/**
-	 * Creates a new template and writes its data to the database
-	 * @param parent The parent entity of this template
-	 * @param parameters The parameters provided by the client
-	 * @throws HttpException If the template couln't be written or created
-	 */
-	public ShoutTemplateEntity(RestEntity parent, Map<String, String> parameters) throws 
-			HttpException
-	{
-		super(new SimpleRestData(), parent, FusrodahTable.TEMPLATES, 
-				checkParameters(parameters), getDefaultParameters());
-		
-		// Creates a new shout as well
-		/*
-		parameters.put("templateID", getDatabaseID());
-		parameters.put("shouterID", parameters.get("senderID"));
-		parameters.put("location", parameters.get("startLocation"));
-		*/
-		new ShoutEntity(this, parameters);
+		FusrodahMetrics.countEntityLoad();
 	}
 	
 	
@@ -84,9 +66,9 @@ public class ShoutTemplateEntity extends DatabaseEntity
 		Map<String, String> attributes = getAttributes();
 		Map<String, RestEntity> links = new HashMap<>();
 		
-		links.put("sender", new UserEntity(getSenderID()));
+		links.put("sender", UserCache.getUser(getSenderID()));
 		if (!attributes.get("receiverID").equals("-1"))
-			links.put("receiver", new UserEntity(attributes.get("receiverID")));
+			links.put("receiver", UserCache.getUser(attributes.get("receiverID")));
 		
 		return links;
 	}
@@ -96,12 +78,12 @@ public class ShoutTemplateEntity extends DatabaseEntity
 			Map<String, String> parameters) throws HttpException
 	{
 		if (pathPart.equals("sender"))
-			return new UserEntity(getSenderID());
+			return UserCache.getUser(getSenderID());
 		else if (pathPart.equals("receiver"))
 		{
 			String receiverID = getAttributes().get("receiverID");
 			if (!receiverID.equals("-1"))
-				return new UserEntity(receiverID);
+				return UserCache.getUser(receiverID);
 		}
 		
 		throw new NotFoundException(getPath() + "/" + pathPart);
@@ -116,6 +98,25 @@ public class ShoutTemplateEntity extends DatabaseEntity
 	
 	// OTHER METHODS	------------------------------
 	
+	/**
+	 * Creates a new template along with its first shout. The template is written as a 
+	 * part of the request scope's transaction and can be read once the scope has ended.
+	 * @param parameters The parameters provided by the client
+	 * @return The identifier of the new template
+	 * @throws HttpException If the template couldn't be created
+	 */
+	public static String create(Map<String, String> parameters) throws HttpException
+	{
+		Map<String, String> template = getDefaultParameters();
+		template.putAll(checkParameters(parameters));
+		String templateID = RequestScope.insert(FusrodahTable.TEMPLATES, template);
+		
+		// Creates a new shout as well
+		ShoutEntity.createFirst(templateID, template);
+		
+		return templateID;
+	}
+	
 	/**
 	 * @return The identifier of the sender of this template
 	 */
@@ -124,6 +125,14 @@ public class ShoutTemplateEntity extends DatabaseEntity
 		return getAttributes().get("senderID");
 	}
 	
+	/**
+	 * @return The location where the shout chain started
+	 */
+	public Location getStartLocation()
+	{
+		return new Location(getAttributes().get("startLocation"));
+	}
+	
 	/**
 	 * @return The target location of the shout chain
 	 */
@@ -145,69 +154,156 @@ public class ShoutTemplateEntity extends DatabaseEntity
 	 */
 	public int calculateGainedPoints()
 	{
-		Location startLocation = new Location(getAttributes().get("startLocation"));
-		return (int) (startLocation.getDistanceFrom(getEndLocation()) / 100);
+		return (int) (getStartLocation().getDistanceFrom(getEndLocation()) / 100);
 	}
 	
 	/**
-	 * Deletes the template and each shout created from it
-	 * @throws HttpException If the template or the shouts couldn't be deleted
+	 * @return The moment the template was last shouted, in milliseconds
 	 */
-	public void delete() throws HttpException
+	public long getLastShoutMillis()
 	{
-		// Deletes the template
-		super.prepareDelete(null);
+		return Long.parseLong(getAttributes().get("lastShoutTime"));
+	}
+	
+	/**
+	 * Updates the last shout time attribute to the database. Within a request scope, the 
+	 * update is written when the scope ends.
+	 * @param timeMillis The new last shout time in milliseconds
+	 * @throws HttpException If the update couldn't be written
+	 */
+	public void updateLastShoutTime(long timeMillis) throws HttpException
+	{
+		setAttribute("lastShoutTime", String.valueOf(timeMillis));
+		if (RequestScope.deferWrite(this))
+			return;
 		
-		try
+		List<ShoutTemplateEntity> templates = new ArrayList<>();
+		templates.add(this);
+		try (Connection connection = FusrodahDatabase.openConnection())
 		{
-			// Deletes all shouts created from this template
-			DatabaseAccessor.delete(FusrodahTable.SHOUTS, "templateID", getDatabaseID());
+			writeLastShoutTimes(connection, templates);
 		}
-		catch (SQLException | DatabaseUnavailableException e)
+		catch (SQLException e)
 		{
-			throw new InternalServerException("Failed to delete the shouts", e);
+			throw new InternalServerException("Failed to update the template", e);
 		}
 	}
 	
 	/**
-	 * Updates the last shout time attribute to the database
-	 * @param time The new last shout time
+	 * Marks the template completed unless it has been completed already. The status is 
+	 * checked and changed with a single conditional update, so when multiple shouts reach 
+	 * the goal at the same time, exactly one of them completes the template. Within a 
+	 * request scope, the update is a part of the scope's transaction. It keeps the 
+	 * template locked until the scope ends, and the update is rolled back if the request 
+	 * fails. Outside of a scope, the update is written right away.
+	 * @return Did this call complete the template. False if the template had already been 
+	 * completed.
 	 * @throws HttpException If the update couldn't be written
 	 */
-	public void updateLastShoutTime(SimpleDate time) throws HttpException
+	public boolean tryComplete() throws HttpException
 	{
-		setAttribute("lastShoutTime", time.toString());
-		writeData();
+		int updatedRows;
+		try
+		{
+			Connection scopeConnection = RequestScope.getConnection();
+			if (scopeConnection != null)
+				updatedRows = writeCompleted(scopeConnection);
+			else
+			{
+				try (Connection connection = FusrodahDatabase.openConnection())
+				{
+					updatedRows = writeCompleted(connection);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new InternalServerException("Failed to complete the template", e);
+		}
+		FusrodahMetrics.countEntityWrite();
+		
+		// Either way, the template is completed once the change has been committed
+		setAttribute("completed", "true");
+		final String templateID = getDatabaseID();
+		RequestScope.afterCommit(new RequestScope.CommitAction()
+		{
+			@Override
+			public void perform()
+			{
+				LiveShoutStore.markTemplateCompleted(templateID);
+			}
+		});
+		
+		return updatedRows > 0;
 	}
 	
 	/**
-	 * Updates the template status to completed
-	 * @throws HttpException If the update couldn't be written
+	 * @param nowMillis The current time in milliseconds
+	 * @return Can the template still be used for creating shouts
 	 */
-	public void markCompleted() throws HttpException
+	public boolean canBeShouted(long nowMillis)
 	{
-		setAttribute("completed", "true");
-		writeData();
+		return nowMillis < getLastShoutMillis() + 
+				ShoutEntity.SHOUT_CAN_BE_SHOUTED_DURATION * 60 * 1000L;
 	}
 	
 	/**
-	 * @return Can the template still be used for creating shouts
-	 * @throws HttpException If the operation failed
+	 * Writes the last shout times of the templates, possibly as a part of a larger 
+	 * transaction. The last shout time never moves backwards, even if another request 
+	 * has written a later time in the meanwhile. The status is written separately, 
+	 * see {@link #tryComplete()}.
+	 * @param connection The connection used for writing
+	 * @param templates The templates that are written
+	 * @throws SQLException If the templates couldn't be written
 	 */
-	public boolean canBeShouted() throws HttpException
+	static void writeLastShoutTimes(Connection connection, 
+			List<ShoutTemplateEntity> templates) throws SQLException
 	{
-		try
+		if (templates.isEmpty())
+			return;
+		
+		// The templates may be in any of the template tables
+		for (String tableName : FusrodahDatabase.getTableNames(connection, 
+				FusrodahTable.TEMPLATES))
 		{
-			SimpleDate lastShoutTime = new SimpleDate(getAttributes().get("lastShoutTime"));
-			return lastShoutTime.plus(ShoutEntity.SHOUT_CAN_BE_SHOUTED_DURATION).isPast(
-					new SimpleDate());
+			try (PreparedStatement statement = connection.prepareStatement("UPDATE " + 
+					tableName + " SET lastShoutTime = GREATEST(lastShoutTime, ?) WHERE id = ?"))
+			{
+				for (ShoutTemplateEntity template : templates)
+				{
+					statement.setLong(1, template.getLastShoutMillis());
+					statement.setString(2, template.getDatabaseID());
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
 		}
-		catch (ParseException e)
+		
+		for (int i = 0; i < templates.size(); i++)
 		{
-			throw new InternalServerException("Can't determine shoutTemplate shout time", e);
+			FusrodahMetrics.countEntityWrite();
 		}
 	}
 	
+	private int writeCompleted(Connection connection) throws SQLException
+	{
+		int updatedRows = 0;
+		
+		// The template may be in any of the template tables
+		for (String tableName : FusrodahDatabase.getTableNames(connection, 
+				FusrodahTable.TEMPLATES))
+		{
+			try (PreparedStatement statement = connection.prepareStatement("UPDATE " + 
+					tableName + " SET completed = 'true' WHERE id = ? AND completed = 'false'"))
+			{
+				statement.setString(1, getDatabaseID());
+				updatedRows += statement.executeUpdate();
+			}
+		}
+		
+		return updatedRows;
+	}
+	
 	private static Map<String, String> getDefaultParameters()
 	{
 		Map<String, String> defaults = new HashMap<>();
@@ -222,9 +318,13 @@ public class ShoutTemplateEntity extends DatabaseEntity
 	{
 		if (!parameters.containsKey("senderID"))
 			throw new InvalidParametersException("Parameter 'senderID' required");
+		if (!parameters.containsKey("message"))
+			throw new InvalidParametersException("Parameter 'message' required");
+		if (!parameters.containsKey("startLocation"))
+			throw new InvalidParametersException("Parameter 'startLocation' required");
 		
 		// Checks that the sender exists
-		UserEntity sender = new UserEntity(parameters.get("senderID"));
+		UserEntity sender = UserCache.getUser(parameters.get("senderID"));
 		
 		// Checks the authorization
 		FusrodahLoginTable.checkUserKey(sender.getDatabaseID(), parameters);
@@ -232,7 +332,7 @@ public class ShoutTemplateEntity extends DatabaseEntity
 		// Provides the end location if receiver is provided
 		if (parameters.containsKey("receiverID"))
 		{
-			UserEntity receiver = new UserEntity(parameters.get("receiverID"));
+			UserEntity receiver = UserCache.getUser(parameters.get("receiverID"));
 			parameters.put("endLocation", receiver.getAttributes().get("location"));
 		}
 		else if (parameters.containsKey("endLocation"))
@@ -260,7 +360,7 @@ public class ShoutTemplateEntity extends DatabaseEntity
 			throw new InvalidParametersException(e.getMessage());
 		}
 		
-		parameters.put("lastShoutTime", new SimpleDate().toString());
+		parameters.put("lastShoutTime", String.valueOf(System.currentTimeMillis()));
 		parameters.put("completed", "false");
 		
 		return parameters;
@@ -0,0 +1,208 @@
+package fusrodah_rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nexus_http.HttpException;
+
+/**
+ * ShouterChain lists the users who have shouted a shout forward. Each chain only stores 
+ * its last shouter and refers to the chain of the previous shout for the rest. A sorted 
+ * copy of the shouter ids is built the first time membership is checked.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class ShouterChain
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private final ShouterChain previous;
+	private final long shouterID;
+	private final int length;
+	private volatile long[] sortedShouterIDs;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new chain by adding a shouter to the end of another chain
+	 * @param previous The chain of the previous shout. Null if this is the first shout.
+	 * @param shouterID The identifier of the user who shouted last
+	 */
+	public ShouterChain(ShouterChain previous, long shouterID)
+	{
+		this.previous = previous;
+		this.shouterID = shouterID;
+		if (previous == null)
+			this.length = 1;
+		else
+			this.length = previous.length + 1;
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------------------
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder();
+		for (long id : getShouterIDs())
+		{
+			if (s.length() > 0)
+				s.append("+");
+			s.append(id);
+		}
+		
+		return s.toString();
+	}
+	
+	
+	// GETTERS & SETTERS	---------------------
+	
+	/**
+	 * @return The identifier of the user who shouted last
+	 */
+	public long getLastShouterID()
+	{
+		return this.shouterID;
+	}
+	
+	/**
+	 * @return How many shouters there are in the chain
+	 */
+	public int getLength()
+	{
+		return this.length;
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Finds the chain of a shout. The previous shouts are gone through until a shout with 
+	 * a known chain or the first shout is found. The chain of each shout on the way is 
+	 * stored as well, so the previous shouts are only read once.
+	 * @param shout The shout whose chain is searched
+	 * @param links Provides the previous shouts and stores the chains
+	 * @return The chain of the shout
+	 * @throws HttpException If the previous shouts couldn't be read
+	 */
+	public static <T> ShouterChain resolve(T shout, ShoutLinks<T> links) throws 
+			HttpException
+	{
+		// Goes back until a shout with a known chain or the first shout is found
+		List<T> unresolved = new ArrayList<>();
+		ShouterChain chain = null;
+		T current = shout;
+		while (current != null)
+		{
+			chain = links.getKnownChain(current);
+			if (chain != null)
+				break;
+			
+			unresolved.add(current);
+			current = links.getParent(current);
+		}
+		
+		// Then builds the chain in the shouting order
+		for (int i = unresolved.size() - 1; i >= 0; i--)
+		{
+			T resolved = unresolved.get(i);
+			chain = new ShouterChain(chain, links.getShouterID(resolved));
+			links.setChain(resolved, chain);
+		}
+		
+		return chain;
+	}
+	
+	/**
+	 * @return The identifiers of the shouters in the order they shouted
+	 */
+	public long[] getShouterIDs()
+	{
+		long[] ids = new long[this.length];
+		ShouterChain chain = this;
+		for (int i = this.length - 1; i >= 0; i--)
+		{
+			ids[i] = chain.shouterID;
+			chain = chain.previous;
+		}
+		
+		return ids;
+	}
+	
+	/**
+	 * Checks whether a user has shouted in this chain
+	 * @param userID The identifier of the user
+	 * @return Has the user shouted in this chain
+	 */
+	public boolean contains(long userID)
+	{
+		long[] sorted = this.sortedShouterIDs;
+		if (sorted == null)
+		{
+			sorted = getShouterIDs();
+			Arrays.sort(sorted);
+			this.sortedShouterIDs = sorted;
+		}
+		
+		return Arrays.binarySearch(sorted, userID) >= 0;
+	}
+	
+	/**
+	 * Checks whether a user has shouted in this chain
+	 * @param userID The identifier of the user
+	 * @return Has the user shouted in this chain. False if the id is not a number.
+	 */
+	public boolean contains(String userID)
+	{
+		try
+		{
+			return contains(Long.parseLong(userID));
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
+	
+	
+	// INTERFACES	-----------------------------
+	
+	/**
+	 * ShoutLinks connects the shouts to their previous shouts and their chains while the 
+	 * chains are resolved
+	 * @param <T> The type of the shouts
+	 */
+	public static interface ShoutLinks<T>
+	{
+		/**
+		 * @param shout A shout
+		 * @return The chain of the shout. Null if it isn't known yet.
+		 */
+		public ShouterChain getKnownChain(T shout);
+		
+		/**
+		 * Stores the chain of a shout
+		 * @param shout A shout
+		 * @param chain The chain of the shout
+		 */
+		public void setChain(T shout, ShouterChain chain);
+		
+		/**
+		 * @param shout A shout
+		 * @return The shout the shout was shouted forward from. Null if it was the first 
+		 * shout.
+		 * @throws HttpException If the previous shout couldn't be read
+		 */
+		public T getParent(T shout) throws HttpException;
+		
+		/**
+		 * @param shout A shout
+		 * @return The identifier of the user who shouted the shout
+		 */
+		public long getShouterID(T shout);
+	}
+}
@@ -0,0 +1,204 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahMetrics;
+import fusrodah_main.FusrodahTable;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+import nexus_http.InvalidParametersException;
+import nexus_rest.ImmutableRestEntity;
+import nexus_rest.RestEntity;
+
+/**
+ * TablePage reads the contents of a list entity one page at a time. The client may 
+ * provide the 'limit' parameter for the page size and the 'after' parameter for the 
+ * identifier of the last entity of the previous page. The lists may also allow filtering 
+ * by some of the indexed columns, either by an exact value (Eg. 'senderID=5') or by a 
+ * range (Eg. 'minCreated=1000&maxCreated=2000', both ends included). The rows of the page 
+ * are read with a single query and presented as read-only entities, so listing a table 
+ * never reads the whole table into memory.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class TablePage
+{
+	// ATTRIBUTES	-----------------------------
+	
+	/**
+	 * How many entities are listed when the client doesn't specify the page size
+	 */
+	public static final int DEFAULT_LIMIT = 50;
+	/**
+	 * How many entities can be listed on a single page at most
+	 */
+	public static final int MAXIMUM_LIMIT = 500;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private TablePage()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Reads a page of entities from a table without filtering
+	 * @param list The list entity the page is read for. The entities are placed under it.
+	 * @param table The table the entities are read from
+	 * @param parameters The parameters provided by the client
+	 * @return The entities on the page in the order of their identifiers. The identifiers 
+	 * are used as keys.
+	 * @throws HttpException If the parameters were invalid or the page couldn't be read
+	 */
+	public static Map<String, RestEntity> read(RestEntity list, FusrodahTable table, 
+			Map<String, String> parameters) throws HttpException
+	{
+		return read(list, table, parameters, new String[0], new String[0]);
+	}
+	
+	/**
+	 * Reads a page of entities from a table. Only the given columns can be used for 
+	 * filtering and they should be indexed.
+	 * @param list The list entity the page is read for. The entities are placed under it.
+	 * @param table The table the entities are read from
+	 * @param parameters The parameters provided by the client
+	 * @param equalityColumns The columns that can be filtered by an exact value
+	 * @param rangeColumns The numeric columns that can be filtered by a range
+	 * @return The entities on the page in the order of their identifiers. The identifiers 
+	 * are used as keys.
+	 * @throws HttpException If the parameters were invalid or the page couldn't be read
+	 */
+	public static Map<String, RestEntity> read(RestEntity list, FusrodahTable table, 
+			Map<String, String> parameters, String[] equalityColumns, String[] rangeColumns)
+			throws HttpException
+	{
+		int limit = parseLimit(parameters);
+		Long afterID = parseAfterID(parameters);
+		
+		// Only the allowed column names are used in the conditions, the values are
+		// provided as statement parameters
+		List<String> conditions = new ArrayList<>();
+		List<Object> conditionValues = new ArrayList<>();
+		if (parameters != null)
+		{
+			for (String column : equalityColumns)
+			{
+				if (parameters.containsKey(column))
+				{
+					conditions.add(column + " = ?");
+					conditionValues.add(parameters.get(column));
+				}
+			}
+			for (String column : rangeColumns)
+			{
+				String suffix = Character.toUpperCase(column.charAt(0)) + column.substring(1);
+				if (parameters.containsKey("min" + suffix))
+				{
+					conditions.add(column + " >= ?");
+					conditionValues.add(parseNumber(parameters, "min" + suffix));
+				}
+				if (parameters.containsKey("max" + suffix))
+				{
+					conditions.add(column + " <= ?");
+					conditionValues.add(parseNumber(parameters, "max" + suffix));
+				}
+			}
+		}
+		
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			return readRows(list, table, conditions, conditionValues, afterID, limit);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("list_" + list.getName(), "GET " + list.getPath(), 
+					started);
+		}
+	}
+	
+	private static Map<String, RestEntity> readRows(RestEntity list, FusrodahTable table, 
+			List<String> conditions, List<Object> conditionValues, Long afterID, int limit)
+			throws HttpException
+	{
+		try (Connection connection = FusrodahDatabase.openConnection())
+		{
+			List<Map<String, String>> rows = FusrodahDatabase.selectPage(connection, table, 
+					conditions, conditionValues, afterID, limit);
+			
+			Map<String, RestEntity> entities = new LinkedHashMap<>();
+			for (Map<String, String> row : rows)
+			{
+				String id = row.get(table.getIDColumnName());
+				entities.put(id, new ImmutableRestEntity(id, list, row));
+			}
+			
+			return entities;
+		}
+		catch (SQLException e)
+		{
+			throw new InternalServerException("Couldn't read the " + list.getName(), e);
+		}
+	}
+	
+	private static int parseLimit(Map<String, String> parameters) throws 
+			InvalidParametersException
+	{
+		if (parameters == null || !parameters.containsKey("limit"))
+			return DEFAULT_LIMIT;
+		
+		try
+		{
+			int limit = Integer.parseInt(parameters.get("limit"));
+			if (limit < 1 || limit > MAXIMUM_LIMIT)
+				throw new InvalidParametersException(
+						"Parameter 'limit' must be between 1 and " + MAXIMUM_LIMIT);
+			return limit;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new InvalidParametersException("Parameter 'limit' must be a number");
+		}
+	}
+	
+	private static long parseNumber(Map<String, String> parameters, String parameterName)
+			throws InvalidParametersException
+	{
+		try
+		{
+			return Long.parseLong(parameters.get(parameterName));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new InvalidParametersException("Parameter '" + parameterName + 
+					"' must be a number");
+		}
+	}
+	
+	private static Long parseAfterID(Map<String, String> parameters) throws 
+			InvalidParametersException
+	{
+		if (parameters == null || !parameters.containsKey("after"))
+			return null;
+		
+		try
+		{
+			return Long.parseLong(parameters.get("after"));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new InvalidParametersException("Parameter 'after' must be an identifier");
+		}
+	}
+}
@@ -3,6 +3,7 @@ package fusrodah_rest;
 import java.util.HashMap;
 import java.util.Map;
 
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import nexus_http.HttpException;
 import nexus_http.MethodNotSupportedException;
@@ -37,15 +38,56 @@ public class TemplateListEntity extends DatabaseTableEntity
 	@Override
 	protected RestEntity loadEntityWithID(String id) throws HttpException
 	{
-		return new ShoutTemplateEntity(id);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			return new ShoutTemplateEntity(id);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("get_template", "GET root/templates/{id}", started);
+		}
 	}
 
 	@Override
 	public RestEntity Post(Map<String, String> parameters) throws HttpException
 	{
-		return new ShoutTemplateEntity(this, parameters);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			// The template and its first shout are written in the same transaction
+			RequestScope.begin();
+			boolean succeeded = false;
+			String templateID;
+			try
+			{
+				templateID = ShoutTemplateEntity.create(parameters);
+				succeeded = true;
+			}
+			finally
+			{
+				RequestScope.end(succeeded);
+			}
+			
+			// The template can only be read once it has been written
+			return new ShoutTemplateEntity(templateID);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("post_templates", "POST root/templates", started);
+		}
 	}
 
+	@Override
+	protected Map<String, RestEntity> getMissingEntities(Map<String, String> parameters) 
+			throws HttpException
+	{
+		// Only a single page of templates is listed at a time. The templates can be
+		// filtered by their sender and status.
+		return TablePage.read(this, FusrodahTable.TEMPLATES, parameters, 
+				new String[] {"senderID", "completed"}, new String[] {"lastShoutTime"});
+	}
+	
 	@Override
 	public void Put(Map<String, String> parameters) throws HttpException
 	{
@@ -0,0 +1,254 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahTable;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+
+/**
+ * UserCache keeps the recently used users in memory. The location and last shout time 
+ * changes are collected in the cache and written to the database in batches instead of 
+ * writing each change separately.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class UserCache
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final Map<String, CachedUser> users = new HashMap<>();
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private UserCache()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Finds a user. The user is read from the database only if it isn't cached already.
+	 * @param userID The identifier of the user
+	 * @return The user with the given identifier
+	 * @throws HttpException If the user couldn't be read or found
+	 */
+	public static UserEntity getUser(String userID) throws HttpException
+	{
+		synchronized (users)
+		{
+			CachedUser cached = users.get(userID);
+			if (cached != null)
+			{
+				cached.lastUseMillis = System.currentTimeMillis();
+				return cached.user;
+			}
+		}
+		
+		// The user is read outside the lock
+		UserEntity user = new UserEntity(userID);
+		
+		synchronized (users)
+		{
+			// Another thread may have read the user in the meanwhile
+			CachedUser cached = users.get(userID);
+			if (cached == null)
+			{
+				cached = new CachedUser(user);
+				users.put(userID, cached);
+			}
+			
+			return cached.user;
+		}
+	}
+	
+	/**
+	 * Finds a user from the cache without reading the database
+	 * @param userID The identifier of the user
+	 * @return The cached user or null if the user isn't cached
+	 */
+	static UserEntity getCachedUser(String userID)
+	{
+		synchronized (users)
+		{
+			CachedUser cached = users.get(userID);
+			if (cached == null)
+				return null;
+			
+			cached.lastUseMillis = System.currentTimeMillis();
+			return cached.user;
+		}
+	}
+	
+	/**
+	 * Writes the changed user data to the database in a single batch
+	 * @throws HttpException If the data couldn't be written
+	 */
+	public static void flush() throws HttpException
+	{
+		// Collects the changed data first
+		List<String[]> changes = new ArrayList<>();
+		List<CachedUser> changedUsers = new ArrayList<>();
+		synchronized (users)
+		{
+			for (CachedUser cached : users.values())
+			{
+				if (!cached.dirty)
+					continue;
+				
+				synchronized (cached.user)
+				{
+					Map<String, String> attributes = cached.user.getAttributes();
+					changes.add(new String[] {attributes.get("location"), 
+							attributes.get("lastShoutTime"), cached.user.getDatabaseID()});
+				}
+				cached.dirty = false;
+				changedUsers.add(cached);
+			}
+		}
+		
+		if (changes.isEmpty())
+			return;
+		
+		try (Connection connection = FusrodahDatabase.openConnection())
+		{
+			connection.setAutoCommit(false);
+			
+			// The user may be in any of the user tables
+			for (String tableName : FusrodahDatabase.getTableNames(connection, 
+					FusrodahTable.USERS))
+			{
+				try (PreparedStatement statement = connection.prepareStatement("UPDATE " + 
+						tableName + " SET location = ?, lastShoutTime = ? WHERE id = ?"))
+				{
+					for (String[] change : changes)
+					{
+						for (int i = 0; i < change.length; i++)
+						{
+							statement.setString(i + 1, change[i]);
+						}
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+			}
+			
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			// The changes will be written during the next flush
+			synchronized (users)
+			{
+				for (CachedUser cached : changedUsers)
+				{
+					cached.dirty = true;
+				}
+			}
+			throw new InternalServerException("Failed to write the user changes", e);
+		}
+	}
+	
+	/**
+	 * Removes the users that haven't been used in a while from the cache. Users with 
+	 * unwritten changes are not removed.
+	 * @param maxIdleMillis How long a user may stay unused in the cache
+	 */
+	public static void removeIdleUsers(long maxIdleMillis)
+	{
+		long now = System.currentTimeMillis();
+		synchronized (users)
+		{
+			Iterator<CachedUser> iterator = users.values().iterator();
+			while (iterator.hasNext())
+			{
+				CachedUser cached = iterator.next();
+				if (!cached.dirty && cached.lastUseMillis + maxIdleMillis < now)
+					iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Marks that the user's location or last shout time has changed and needs to be 
+	 * written to the database
+	 * @param user The user that was changed
+	 */
+	static void markChanged(UserEntity user)
+	{
+		synchronized (users)
+		{
+			CachedUser cached = users.get(user.getDatabaseID());
+			if (cached == null || cached.user != user)
+			{
+				cached = new CachedUser(user);
+				users.put(user.getDatabaseID(), cached);
+			}
+			cached.dirty = true;
+		}
+	}
+	
+	/**
+	 * Updates the points of a cached user after the points have been awarded in the 
+	 * database. Users that aren't cached read their points from the database anyway.
+	 * @param userID The identifier of the user
+	 * @param increment How many points were given to the user
+	 */
+	static void applyAwardedPoints(String userID, int increment)
+	{
+		CachedUser cached;
+		synchronized (users)
+		{
+			cached = users.get(userID);
+		}
+		
+		if (cached != null)
+			cached.user.applyAwardedPoints(increment);
+	}
+	
+	/**
+	 * Removes a user from the cache. This should be done when the user is deleted.
+	 * @param userID The identifier of the user
+	 */
+	static void forget(String userID)
+	{
+		synchronized (users)
+		{
+			users.remove(userID);
+		}
+	}
+	
+	
+	// SUBCLASSES	-----------------------------
+	
+	private static class CachedUser
+	{
+		// ATTRIBUTES	-------------------------
+		
+		private final UserEntity user;
+		private boolean dirty;
+		private long lastUseMillis;
+		
+		
+		// CONSTRUCTOR	-------------------------
+		
+		public CachedUser(UserEntity user)
+		{
+			this.user = user;
+			this.dirty = false;
+			this.lastUseMillis = System.currentTimeMillis();
+		}
+	}
+}
@@ -1,18 +1,19 @@
 package fusrodah_rest;
 
 import java.sql.SQLException;
-import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import vault_database.DatabaseAccessor;
 import vault_database.DatabaseUnavailableException;
+import fusrodah_main.FusrodahDatabase;
 import fusrodah_main.FusrodahLoginTable;
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import fusrodah_main.Location;
+import fusrodah_main.LoginKeyCache;
 import nexus_http.HttpException;
 import nexus_http.InternalServerException;
 import nexus_http.InvalidParametersException;
@@ -24,7 +25,6 @@ import nexus_rest.RestEntityLinkList;
 import nexus_rest.SimpleRestData;
 import alliance_authorization.SecureEntity;
 import alliance_rest.DatabaseEntity;
-import alliance_util.SimpleDate;
 
 /**
  * User entity represents a single user in the service
@@ -40,7 +40,7 @@ public class UserEntity extends DatabaseEntity
 	 * The path preceding each user entity
 	 */
 	private static final String ROOTPATH = "root/users/";
-	private static final int shoutDelayMinutes = 15;
+	private static final long SHOUT_DELAY_MILLIS = 15 * 60 * 1000;
 	
 	
 	// CONSTRUCTOR	---------------------------------
@@ -53,6 +53,7 @@ public class UserEntity extends DatabaseEntity
 	public UserEntity(String id) throws HttpException
 	{
 		super(new SimpleRestData(), ROOTPATH, FusrodahTable.USERS, id);
+		FusrodahMetrics.countEntityLoad();
 	}
 
 	/**
@@ -65,6 +66,8 @@ public class UserEntity extends DatabaseEntity
 	{
 		super(new SimpleRestData(), parent, FusrodahTable.USERS, 
 				checkParameters(parameters), new HashMap<>());
+		FusrodahMetrics.countEntityWrite();
+		FusrodahDatabase.tableMayHaveGrown(FusrodahTable.USERS);
 		
 		// Also creates the secure entity for the user
 		new Secure(parameters);
@@ -109,6 +112,8 @@ public class UserEntity extends DatabaseEntity
 	protected void prepareDelete(Map<String, String> parameters) throws HttpException
 	{
 		super.prepareDelete(parameters);
+		UserCache.forget(getDatabaseID());
+		LoginKeyCache.invalidate(getDatabaseID());
 		
 		// Also deletes the secure
 		new Secure().delete(parameters);
@@ -118,55 +123,59 @@ public class UserEntity extends DatabaseEntity
 	// OTHER METHODS	-------------------------------
 	
 	/**
+	 * @return The moment the user last shouted, in milliseconds
+	 */
+	public synchronized long getLastShoutMillis()
+	{
+		return Long.parseLong(getAttributes().get("lastShoutTime"));
+	}
+	
+	/**
+	 * @param nowMillis The current time in milliseconds
 	 * @return Can the user post a new shout at this time
-	 * @throws HttpException If the operation failed
 	 */
-	public boolean canShout() throws HttpException
+	public boolean canShout(long nowMillis)
 	{
-		SimpleDate lastShoutTime;
-		try
-		{
-			lastShoutTime = new SimpleDate(getAttributes().get("lastShoutTime"));
-		}
-		catch (ParseException e)
-		{
-			throw new InternalServerException("Failed to check user shout time", e);
-		}
-		return (new SimpleDate().isPast(lastShoutTime.plus(shoutDelayMinutes)));
+		return nowMillis > getLastShoutMillis() + SHOUT_DELAY_MILLIS;
 	}
 	
 	/**
-	 * Updates the user's new location to the database
+	 * Updates the user's new location. The change is written to the database along with 
+	 * the other cached user changes.
 	 * @param newLocation The user's new location
-	 * @throws HttpException If the update couldn't be performed
 	 */
-	public void updateLocation(Location newLocation) throws HttpException
+	public void updateLocation(Location newLocation)
 	{
-		setAttribute("location", newLocation.toString());
-		writeData();
+		synchronized (this)
+		{
+			setAttribute("location", newLocation.toString());
+		}
+		UserCache.markChanged(this);
 	}
 	
 	/**
-	 * Marks the current moment as the user's latest shout time
-	 * @throws HttpException If the update couldn't be performed
+	 * Updates the user's latest shout time. The change is written to the database along 
+	 * with the other cached user changes.
+	 * @param nowMillis The moment the user shouted, in milliseconds
 	 */
-	public void updateLastShoutTime() throws HttpException
+	public void updateLastShoutTime(long nowMillis)
 	{
-		setAttribute("lastShoutTime", new SimpleDate().toString());
-		writeData();
+		synchronized (this)
+		{
+			setAttribute("lastShoutTime", String.valueOf(nowMillis));
+		}
+		UserCache.markChanged(this);
 	}
 	
 	/**
-	 * Gives some points to the user
-	 * @param increment How many points are given to this player
-	 * @throws HttpException If the update couldn't be performed
+	 * Updates the user's points after they have been awarded in the database. The points 
+	 * should be awarded through {@link PointsLedger}.
+	 * @param increment How many points were given to this player
 	 */
-	public void addPoints(int increment) throws HttpException
+	synchronized void applyAwardedPoints(int increment)
 	{
 		int newPoints = Integer.parseInt(getAttributes().get("points")) + increment;
-		
 		setAttribute("points", "" + newPoints);
-		writeData();
 	}
 	
 	private static Map<String, String> checkParameters(Map<String, String> parameters) 
@@ -193,7 +202,7 @@ public class UserEntity extends DatabaseEntity
 					"Parameter 'userName' must not start with a digit");
 		
 		// Sets the last shout time to default as well
-		parameters.put("lastShoutTime", new SimpleDate(new Date(0)).toString());
+		parameters.put("lastShoutTime", "0");
 		
 		return parameters;
 	}
@@ -256,6 +265,18 @@ public class UserEntity extends DatabaseEntity
 		{
 			FusrodahLoginTable.checkUserKey(getDatabaseID(), parameters);
 		}
+		
+		@Override
+		public void Put(Map<String, String> parameters) throws HttpException
+		{
+			super.Put(parameters);
+		}
+		
+		@Override
+		protected void prepareDelete(Map<String, String> parameters) throws HttpException
+		{
+			super.prepareDelete(parameters);
+		}
 	}
 	
 	private static class VictoryEntityList extends RestEntityLinkList
@@ -302,12 +323,10 @@ public class UserEntity extends DatabaseEntity
 		private List<VictoryEntity> findGainedVictories() throws HttpException
 		{
 			List<VictoryEntity> victories = new ArrayList<>();
-			// For each victory, checks if the user has collaborated
-			for (String victoryID : VictoryEntity.getAllVictoryIDs())
+			// Only reads the victories the user has collaborated in
+			for (String victoryID : VictoryIndex.getVictoryIDs(this.userID))
 			{
-				VictoryEntity victory = new VictoryEntity(victoryID);
-				if (victory.hasCollaborated(this.userID))
-					victories.add(victory);
+				victories.add(RequestScope.getVictory(victoryID));
 			}
 			
 			return victories;
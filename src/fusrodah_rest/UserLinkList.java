@@ -0,0 +1,120 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahTable;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+import nexus_rest.ImmutableRestEntity;
+import nexus_rest.RestEntity;
+import nexus_rest.RestEntityLinkList;
+
+/**
+ * UserLinkList links to a group of users, like the shouters of a shout. The users are only 
+ * read when the list is used and then all at once. Cached users are linked as they are 
+ * while the other users are read with a single query and presented as read-only entities 
+ * at their usual paths.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class UserLinkList extends RestEntityLinkList
+{
+	// ATTRIBUTES	-----------------------------
+	
+	// The read-only users are placed under root/users like the user entities
+	private static final RestEntity USERS = new ImmutableRestEntity("users", 
+			new ImmutableRestEntity("root", null, new HashMap<String, String>()), 
+			new HashMap<String, String>());
+	
+	private final List<String> userIDs;
+	private List<RestEntity> users;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new list. The users are not read yet.
+	 * @param name The name of the list
+	 * @param parent The parent of the list
+	 * @param userIDs The identifiers of the linked users in the order they should be 
+	 * presented in
+	 */
+	public UserLinkList(String name, RestEntity parent, List<String> userIDs)
+	{
+		super(name, parent);
+		
+		this.userIDs = userIDs;
+		this.users = null;
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------------------
+	
+	@Override
+	protected List<RestEntity> getEntities() throws HttpException
+	{
+		// The users are read only once
+		if (this.users == null)
+			this.users = readUsers(this.userIDs);
+		
+		return this.users;
+	}
+	
+	@Override
+	public void trim(Map<String, String> parameters)
+	{
+		// No trimming required
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	private static List<RestEntity> readUsers(List<String> userIDs) throws HttpException
+	{
+		Map<String, RestEntity> foundUsers = new HashMap<>();
+		List<String> missingIDs = new ArrayList<>();
+		for (String userID : userIDs)
+		{
+			UserEntity cached = UserCache.getCachedUser(userID);
+			if (cached == null)
+				missingIDs.add(userID);
+			else
+				foundUsers.put(userID, cached);
+		}
+		
+		if (!missingIDs.isEmpty())
+		{
+			try (Connection connection = FusrodahDatabase.openConnection())
+			{
+				for (Map<String, String> row : FusrodahDatabase.selectWhereIn(connection, 
+						FusrodahTable.USERS, "id", missingIDs))
+				{
+					String userID = row.get("id");
+					foundUsers.put(userID, new ImmutableRestEntity(userID, USERS, row));
+				}
+			}
+			catch (SQLException e)
+			{
+				throw new InternalServerException("Couldn't read the users", e);
+			}
+		}
+		
+		// The users are presented in the original order. Deleted users are left out.
+		List<RestEntity> users = new ArrayList<>();
+		for (String userID : userIDs)
+		{
+			RestEntity user = foundUsers.get(userID);
+			if (user != null)
+				users.add(user);
+		}
+		
+		return users;
+	}
+}
@@ -3,6 +3,7 @@ package fusrodah_rest;
 import java.util.HashMap;
 import java.util.Map;
 
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import nexus_http.HttpException;
 import nexus_http.MethodNotSupportedException;
@@ -36,15 +37,39 @@ public class UsersListEntity extends DatabaseTableEntity
 	@Override
 	protected RestEntity loadEntityWithID(String id) throws HttpException
 	{
-		return new UserEntity(id);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			return UserCache.getUser(id);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("get_user", "GET root/users/{id}", started);
+		}
 	}
 
 	@Override
 	public RestEntity Post(Map<String, String> parameters) throws HttpException
 	{
-		return new UserEntity(this, parameters);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			return new UserEntity(this, parameters);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("post_users", "POST root/users", started);
+		}
 	}
 
+	@Override
+	protected Map<String, RestEntity> getMissingEntities(Map<String, String> parameters) 
+			throws HttpException
+	{
+		// Only a single page of users is listed at a time
+		return TablePage.read(this, FusrodahTable.USERS, parameters);
+	}
+	
 	@Override
 	public void Put(Map<String, String> parameters) throws HttpException
 	{
@@ -1,27 +1,19 @@
 package fusrodah_rest;
 
-import java.sql.SQLException;
-import java.text.ParseException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
-import vault_database.DatabaseUnavailableException;
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
-import nexus_http.ForbiddenActionException;
 import nexus_http.HttpException;
-import nexus_http.InternalServerException;
 import nexus_http.MethodNotSupportedException;
 import nexus_http.MethodType;
 import nexus_http.NotFoundException;
 import nexus_rest.RestEntity;
 import nexus_rest.RestEntityList;
 import nexus_rest.SimpleRestData;
-import nexus_rest.SimpleRestEntityLinkList;
 import alliance_rest.DatabaseEntity;
-import alliance_rest.DatabaseEntityTable;
-import alliance_util.SimpleDate;
 
 /**
  * A victory entity represents a completed shout chain that has reached its destination
@@ -33,8 +25,10 @@ public class VictoryEntity extends DatabaseEntity
 	// ATTRIBUTES	--------------------------
 	
 	private static final String ROOTPATH = "root/victories/";
-	// Victories last for a week on the server
-	private static final int VICTORY_DURATION_MINUTES = 7 * 24 * 60;
+	/**
+	 * How long the victories stay on the server. In milliseconds.
+	 */
+	public static final long VICTORY_DURATION_MILLIS = 7 * 24 * 60 * 60 * 1000L;
 	
 	
 	// CONSTRUCTOR	--------------------------
@@ -47,17 +41,7 @@ public class VictoryEntity extends DatabaseEntity
 	public VictoryEntity(String id) throws HttpException
 	{
 		super(new SimpleRestData(), ROOTPATH, FusrodahTable.VICTORIES, id);
-	}
-
-	/**
-	 * Registers a new victory
-	 * @param victoryShout The shout that caused the template to be completed
-	 * @throws HttpException If the creation of the entity failed
-	 */
-	public VictoryEntity(ShoutEntity victoryShout) throws HttpException
-	{
-		super(new SimpleRestData(), victoryShout, FusrodahTable.VICTORIES, 
-				generateParameters(victoryShout), new HashMap<>());
+		FusrodahMetrics.countEntityLoad();
 	}
 	
 	
@@ -110,121 +94,71 @@ public class VictoryEntity extends DatabaseEntity
 	// OTHER METHODS	------------------------
 	
 	/**
-	 * Checks if a user has received points from this victory
-	 * @param userID The identifier of the user
-	 * @return Has the given user received points from this victory
+	 * Registers a new victory for a shout that reached the template's goal. Only one 
+	 * shout can complete the template, even if multiple shouts reach the goal at the same 
+	 * time. The others just give some points to their shouter but don't create a victory. 
+	 * The victory is written as a part of the request scope's transaction.
+	 * @param template The template the shout was created from
+	 * @param receivers The shouters that contributed to the shout
+	 * @param createdMillis The moment the shout reached the goal, in milliseconds
+	 * @return The identifier of the new victory. Null if the template had already been 
+	 * completed.
+	 * @throws HttpException If the creation of the victory failed
 	 */
-	public boolean hasCollaborated(String userID)
+	static String create(ShoutTemplateEntity template, ShouterChain receivers, 
+			long createdMillis) throws HttpException
 	{
-		String[] receiverIDs = getReceiverIDs();
-		for (int i = 0; i < receiverIDs.length; i++)
+		int receivedPoints = template.calculateGainedPoints();
+		if (!template.tryComplete())
 		{
-			if (receiverIDs[i].equals(userID))
-				return true;
+			PointsLedger.award(String.valueOf(receivers.getLastShouterID()), 
+					receivedPoints / 2);
+			return null;
 		}
 		
-		return false;
-	}
-	
-	/**
-	 * @return Is the entity old enough to be removed from the server
-	 * @throws HttpException If the operation failed
-	 */
-	public boolean shouldBeRemoved() throws HttpException
-	{
-		try
-		{
-			return new SimpleDate().isPast(new SimpleDate(getAttributes().get("created")).plus(
-					VICTORY_DURATION_MINUTES));
-		}
-		catch (ParseException e)
-		{
-			throw new InternalServerException("Couldn't define victory creation time", e);
-		}
-	}
-	
-	/**
-	 * Deletes the entity without authorization. Also removes the connected template
-	 * @throws HttpException If the operation failed
-	 */
-	public void delete() throws HttpException
-	{
-		getTemplate().delete();
-		super.prepareDelete(new HashMap<>());
-	}
-	
-	/**
-	 * @return A list containing all the victory ids that are currently in use
-	 * @throws HttpException If the ids couldn't be read for some reason
-	 */
-	public static List<String> getAllVictoryIDs() throws HttpException
-	{
-		try
+		Map<String, String> values = new HashMap<>();
+		values.put("created", String.valueOf(createdMillis));
+		values.put("templateID", template.getDatabaseID());
+		values.put("receivedPoints", "" + receivedPoints);
+		values.put("receiverIDs", receivers.toString());
+		final String victoryID = RequestScope.insert(FusrodahTable.VICTORIES, values);
+		
+		// Also adds points to all contributed players
+		long[] shouterIDs = receivers.getShouterIDs();
+		final String[] receiverIDs = new String[shouterIDs.length];
+		Map<String, Integer> awardedPoints = new HashMap<>();
+		for (int i = 0; i < shouterIDs.length; i++)
 		{
-			return DatabaseEntityTable.findMatchingIDs(
-					FusrodahTable.VICTORIES, new String[0], new String[0]);
+			receiverIDs[i] = String.valueOf(shouterIDs[i]);
+			awardedPoints.put(receiverIDs[i], receivedPoints);
 		}
-		catch (DatabaseUnavailableException | SQLException e)
+		PointsLedger.award(awardedPoints);
+		
+		RequestScope.afterCommit(new RequestScope.CommitAction()
 		{
-			throw new InternalServerException("Couldn't read the victory ids", e);
-		}
+			@Override
+			public void perform()
+			{
+				VictoryIndex.add(victoryID, receiverIDs);
+			}
+		});
+		
+		return victoryID;
 	}
 	
 	private ShoutTemplateEntity getTemplate() throws HttpException
 	{
-		return new ShoutTemplateEntity(getAttributes().get("templateID"));
+		return RequestScope.getTemplate(getAttributes().get("templateID"));
 	}
 	
-	private RestEntityList getReceivers() throws HttpException
+	private RestEntityList getReceivers()
 	{
-		String[] receiverIDs = getReceiverIDs();
-		List<RestEntity> receivers = new ArrayList<>();
-		for (int i = 0; i < receiverIDs.length; i++)
-		{
-			receivers.add(new UserEntity(receiverIDs[i]));
-		}
-		
-		return new SimpleRestEntityLinkList("receivers", this, receivers);
+		// The receivers are read all at once when the list is used
+		return new UserLinkList("receivers", this, Arrays.asList(getReceiverIDs()));
 	}
 	
 	private String[] getReceiverIDs()
 	{
 		return getAttributes().get("receiverIDs").split("\\+");
 	}
-	
-	private static Map<String, String> generateParameters(ShoutEntity shout) throws HttpException
-	{
-		Map<String, String> parameters = new HashMap<>();
-		
-		// Checks if the template was already completed
-		// If so, just adds some points but doesn't allow a new victory entity
-		String templateID = shout.getAttributes().get("templateID");
-		ShoutTemplateEntity template = new ShoutTemplateEntity(templateID);
-		int receivedPoints = template.calculateGainedPoints();
-		
-		if (template.isCompleted())
-		{
-			String[] shouterIDs = shout.getShouterIds();
-			UserEntity lastShouter = new UserEntity(shouterIDs[shouterIDs.length - 1]);
-			lastShouter.addPoints(receivedPoints / 2);
-			throw new ForbiddenActionException("The shout had already reached it's goal");
-		}
-		
-		parameters.put("created", new SimpleDate().toString());
-		
-		// Updates the template
-		parameters.put("templateID", templateID);
-		parameters.put("receivedPoints", "" + receivedPoints);
-		template.markCompleted();
-		
-		// Also adds points to all contributed players
-		parameters.put("receiverIDs", shout.getAttributes().get("shouterIDs"));
-		String[] receiverIDs = shout.getShouterIds();
-		for (int i = 0; i < receiverIDs.length; i++)
-		{
-			new UserEntity(receiverIDs[i]).addPoints(receivedPoints);
-		}
-		
-		return parameters;
-	}
 }
@@ -0,0 +1,137 @@
+package fusrodah_rest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fusrodah_main.FusrodahDatabase;
+import fusrodah_main.FusrodahTable;
+import nexus_http.HttpException;
+import nexus_http.InternalServerException;
+
+/**
+ * VictoryIndex knows which victories each user has received points from. The index is 
+ * built when the server starts and updated whenever a victory is created or deleted.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class VictoryIndex
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private static final Map<String, Set<String>> victoryIDsByUser = new HashMap<>();
+	private static final Map<String, String[]> receiverIDsByVictory = new HashMap<>();
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	private VictoryIndex()
+	{
+		// The interface is static
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Builds the index from the victories in the database. This should be done once when 
+	 * the server starts.
+	 * @throws HttpException If the victories couldn't be read
+	 */
+	public static void initialize() throws HttpException
+	{
+		try (Connection connection = FusrodahDatabase.openConnection())
+		{
+			for (String tableName : FusrodahDatabase.getTableNames(connection, 
+					FusrodahTable.VICTORIES))
+			{
+				try (PreparedStatement statement = connection.prepareStatement(
+						"SELECT id, receiverIDs FROM " + tableName);
+						ResultSet result = statement.executeQuery())
+				{
+					while (result.next())
+					{
+						add(result.getString(1), result.getString(2).split("\\+"));
+					}
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			throw new InternalServerException("Couldn't read the victories", e);
+		}
+	}
+	
+	/**
+	 * Finds the victories a user has received points from
+	 * @param userID The identifier of the user
+	 * @return The identifiers of the victories the user has collaborated in
+	 */
+	public static List<String> getVictoryIDs(String userID)
+	{
+		synchronized (victoryIDsByUser)
+		{
+			Set<String> victoryIDs = victoryIDsByUser.get(userID);
+			if (victoryIDs == null)
+				return new ArrayList<>();
+			
+			return new ArrayList<>(victoryIDs);
+		}
+	}
+	
+	/**
+	 * Adds a victory to the index
+	 * @param victoryID The identifier of the victory
+	 * @param receiverIDs The identifiers of the users who received points from the victory
+	 */
+	static void add(String victoryID, String[] receiverIDs)
+	{
+		synchronized (victoryIDsByUser)
+		{
+			receiverIDsByVictory.put(victoryID, receiverIDs);
+			for (String receiverID : receiverIDs)
+			{
+				Set<String> victoryIDs = victoryIDsByUser.get(receiverID);
+				if (victoryIDs == null)
+				{
+					victoryIDs = new HashSet<>();
+					victoryIDsByUser.put(receiverID, victoryIDs);
+				}
+				victoryIDs.add(victoryID);
+			}
+		}
+	}
+	
+	/**
+	 * Removes a victory from the index. This should be done when the victory is deleted.
+	 * @param victoryID The identifier of the victory
+	 */
+	public static void remove(String victoryID)
+	{
+		synchronized (victoryIDsByUser)
+		{
+			String[] receiverIDs = receiverIDsByVictory.remove(victoryID);
+			if (receiverIDs == null)
+				return;
+			
+			for (String receiverID : receiverIDs)
+			{
+				Set<String> victoryIDs = victoryIDsByUser.get(receiverID);
+				if (victoryIDs != null)
+				{
+					victoryIDs.remove(victoryID);
+					if (victoryIDs.isEmpty())
+						victoryIDsByUser.remove(receiverID);
+				}
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package fusrodah_rest;
 import java.util.HashMap;
 import java.util.Map;
 
+import fusrodah_main.FusrodahMetrics;
 import fusrodah_main.FusrodahTable;
 import nexus_http.HttpException;
 import nexus_http.MethodNotSupportedException;
@@ -36,7 +37,15 @@ public class VictoryListEntity extends DatabaseTableEntity
 	@Override
 	protected RestEntity loadEntityWithID(String id) throws HttpException
 	{
-		return new VictoryEntity(id);
+		long started = FusrodahMetrics.startRequest();
+		try
+		{
+			return new VictoryEntity(id);
+		}
+		finally
+		{
+			FusrodahMetrics.endRequest("get_victory", "GET root/victories/{id}", started);
+		}
 	}
 
 	@Override
@@ -45,6 +54,16 @@ public class VictoryListEntity extends DatabaseTableEntity
 		throw new MethodNotSupportedException(MethodType.POST);
 	}
 
+	@Override
+	protected Map<String, RestEntity> getMissingEntities(Map<String, String> parameters) 
+			throws HttpException
+	{
+		// Only a single page of victories is listed at a time. The victories can be
+		// filtered by their template and creation time.
+		return TablePage.read(this, FusrodahTable.VICTORIES, parameters, 
+				new String[] {"templateID"}, new String[] {"created"});
+	}
+	
 	@Override
 	public void Put(Map<String, String> parameters) throws HttpException
 	{
@@ -0,0 +1,418 @@
+package fusrodah_test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures how a running server copes with a large amount of idle clients that 
+ * keep polling it, like the clients polling for the best shouts do. Each client keeps its 
+ * own connection open and sends a request once every poll interval. The requests ask for 
+ * keep-alive and a client may pipeline several requests at once. The response times are 
+ * reported together with the amount of connections the server closed. All connections are 
+ * handled by a single thread, so the client itself doesn't limit the amount of 
+ * connections. The open file limit of the system may need to be raised for 10000 
+ * connections (Eg. ulimit -n).
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class ConnectionLoadTest
+{
+	// ATTRIBUTES	--------------------------------
+	
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+	
+	private final InetSocketAddress serverAddress;
+	private final byte[] requestBytes;
+	private final int pipelineDepth;
+	private final long pollIntervalNanos;
+	private final EndpointStatistics statistics;
+	private final Random random;
+	private Selector selector;
+	private int reopenedConnections, failedConnections;
+	
+	
+	// CONSTRUCTOR	--------------------------------
+	
+	private ConnectionLoadTest(String host, int port, String path, int pipelineDepth, 
+			long pollIntervalMillis)
+	{
+		this.serverAddress = new InetSocketAddress(host, port);
+		this.requestBytes = ("GET /" + path + " HTTP/1.1\r\nHost: " + host + ":" + port + 
+				"\r\nConnection: keep-alive\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+		this.pipelineDepth = pipelineDepth;
+		this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMillis);
+		this.statistics = new EndpointStatistics("GET /" + path);
+		this.random = new Random(42);
+		this.reopenedConnections = 0;
+		this.failedConnections = 0;
+	}
+	
+	
+	// MAIN METHOD	--------------------------------
+	
+	/**
+	 * Runs the test against a running server
+	 * @param args The server host (optional, default = 127.0.0.1). The server port 
+	 * (optional, default = 7777). The amount of connections (optional, default = 10000). 
+	 * The duration of the test in seconds (optional, default = 60). The poll interval of 
+	 * each connection in milliseconds (optional, default = 1000). The amount of pipelined 
+	 * requests per poll (optional, default = 1). The polled path (optional, 
+	 * default = root/shouts/best). The best shouts also require the userID, userKey and 
+	 * location parameters, which can be appended to the path.
+	 */
+	public static void main(String[] args)
+	{
+		String host = "127.0.0.1";
+		int port = 7777;
+		int connectionAmount = 10000;
+		int durationSeconds = 60;
+		long pollIntervalMillis = 1000;
+		int pipelineDepth = 1;
+		String path = "root/shouts/best";
+		try
+		{
+			if (args.length > 0)
+				host = args[0];
+			if (args.length > 1)
+				port = Integer.parseInt(args[1]);
+			if (args.length > 2)
+				connectionAmount = Integer.parseInt(args[2]);
+			if (args.length > 3)
+				durationSeconds = Integer.parseInt(args[3]);
+			if (args.length > 4)
+				pollIntervalMillis = Long.parseLong(args[4]);
+			if (args.length > 5)
+				pipelineDepth = Math.max(1, Integer.parseInt(args[5]));
+			if (args.length > 6)
+				path = args[6];
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println("Please provide the correct arguments: host, port, connection "
+					+ "amount, duration, poll interval, pipeline depth and path (all optional)");
+			System.exit(1);
+		}
+		
+		ConnectionLoadTest test = new ConnectionLoadTest(host, port, path, pipelineDepth, 
+				pollIntervalMillis);
+		try
+		{
+			test.run(connectionAmount, TimeUnit.SECONDS.toNanos(durationSeconds));
+		}
+		catch (IOException e)
+		{
+			System.err.println("Failed to run the connection load test");
+			e.printStackTrace();
+		}
+	}
+	
+	
+	// OTHER METHODS	----------------------------
+	
+	private void run(int connectionAmount, long durationNanos) throws IOException
+	{
+		this.selector = Selector.open();
+		List<PollingConnection> connections = new ArrayList<>();
+		long started = System.nanoTime();
+		for (int i = 0; i < connectionAmount; i++)
+		{
+			// The first polls are spread over the poll interval
+			PollingConnection connection = new PollingConnection(started + 
+					(long) (this.random.nextDouble() * this.pollIntervalNanos));
+			connection.open();
+			connections.add(connection);
+		}
+		
+		long end = started + durationNanos;
+		while (System.nanoTime() < end)
+		{
+			this.selector.select(10);
+			for (SelectionKey key : this.selector.selectedKeys())
+			{
+				PollingConnection connection = (PollingConnection) key.attachment();
+				try
+				{
+					if (key.isConnectable())
+						connection.finishConnect();
+					else
+					{
+						if (key.isWritable())
+							connection.write();
+						if (key.isValid() && key.isReadable())
+							connection.read();
+					}
+				}
+				catch (IOException e)
+				{
+					connection.fail();
+				}
+			}
+			this.selector.selectedKeys().clear();
+			
+			long now = System.nanoTime();
+			for (PollingConnection connection : connections)
+			{
+				connection.update(now);
+			}
+		}
+		double seconds = (System.nanoTime() - started) / 1000000000.0;
+		
+		int openConnections = 0;
+		for (PollingConnection connection : connections)
+		{
+			if (connection.isConnected())
+				openConnections++;
+			connection.close();
+		}
+		this.selector.close();
+		
+		System.out.println(EndpointStatistics.getHeader() + String.format(" %10s", "req/s"));
+		System.out.println(this.statistics + String.format(" %10.1f", 
+				this.statistics.getRequestAmount() / seconds));
+		System.out.println(String.format("%d of %d connections open at the "
+				+ "end, %d reopened after the server closed them, %d failed", 
+				openConnections, connectionAmount, this.reopenedConnections, 
+				this.failedConnections));
+	}
+	
+	
+	// SUBCLASSES	--------------------------------
+	
+	private class PollingConnection
+	{
+		// ATTRIBUTES	----------------------------
+		
+		private SocketChannel channel;
+		private SelectionKey key;
+		private boolean connected;
+		// The received bytes that don't form a full response yet, one char per byte
+		private final StringBuilder received;
+		private ByteBuffer toSend;
+		private long sentNanos, nextPollNanos;
+		private int pendingResponses;
+		
+		
+		// CONSTRUCTOR	----------------------------
+		
+		public PollingConnection(long firstPollNanos)
+		{
+			this.received = new StringBuilder();
+			this.nextPollNanos = firstPollNanos;
+			this.connected = false;
+			this.pendingResponses = 0;
+		}
+		
+		
+		// OTHER METHODS	------------------------
+		
+		public boolean isConnected()
+		{
+			return this.connected;
+		}
+		
+		public void open()
+		{
+			try
+			{
+				this.channel = SocketChannel.open();
+				this.channel.configureBlocking(false);
+				this.received.setLength(0);
+				this.pendingResponses = 0;
+				if (this.channel.connect(ConnectionLoadTest.this.serverAddress))
+				{
+					this.key = this.channel.register(ConnectionLoadTest.this.selector, 0, 
+							this);
+					this.connected = true;
+				}
+				else
+					this.key = this.channel.register(ConnectionLoadTest.this.selector, 
+							SelectionKey.OP_CONNECT, this);
+			}
+			catch (IOException e)
+			{
+				fail();
+			}
+		}
+		
+		public void finishConnect() throws IOException
+		{
+			if (this.channel.finishConnect())
+			{
+				this.connected = true;
+				this.key.interestOps(0);
+			}
+		}
+		
+		public void update(long nowNanos)
+		{
+			if (this.channel == null)
+			{
+				// Failed connections are retried on their next poll
+				if (nowNanos >= this.nextPollNanos)
+				{
+					this.nextPollNanos = nowNanos + ConnectionLoadTest.this.pollIntervalNanos;
+					open();
+				}
+			}
+			else if (this.connected && this.pendingResponses == 0 && 
+					nowNanos >= this.nextPollNanos)
+			{
+				// Sends the requests of this poll at once
+				int depth = ConnectionLoadTest.this.pipelineDepth;
+				byte[] request = ConnectionLoadTest.this.requestBytes;
+				this.toSend = ByteBuffer.allocate(request.length * depth);
+				for (int i = 0; i < depth; i++)
+				{
+					this.toSend.put(request);
+				}
+				this.toSend.flip();
+				
+				this.pendingResponses = depth;
+				this.sentNanos = nowNanos;
+				this.nextPollNanos = nowNanos + ConnectionLoadTest.this.pollIntervalNanos;
+				this.key.interestOps(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+			}
+		}
+		
+		public void write() throws IOException
+		{
+			this.channel.write(this.toSend);
+			if (!this.toSend.hasRemaining())
+				this.key.interestOps(SelectionKey.OP_READ);
+		}
+		
+		public void read() throws IOException
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			int read = this.channel.read(buffer);
+			if (read < 0)
+			{
+				// A response without a length ends when the connection closes
+				if (this.pendingResponses > 0 && this.received.length() > 0)
+				{
+					completeResponse(isSuccess(this.received));
+					this.received.setLength(0);
+				}
+				// The requests that were left without a response failed
+				while (this.pendingResponses > 0)
+				{
+					completeResponse(false);
+				}
+				
+				// The connection is opened again for the next poll
+				ConnectionLoadTest.this.reopenedConnections++;
+				reset();
+				open();
+				return;
+			}
+			
+			buffer.flip();
+			this.received.append(StandardCharsets.ISO_8859_1.decode(buffer));
+			
+			int responseLength;
+			while (this.pendingResponses > 0 && 
+					(responseLength = findResponseLength(this.received)) > 0)
+			{
+				completeResponse(isSuccess(this.received));
+				this.received.delete(0, responseLength);
+			}
+			
+			if (this.pendingResponses == 0 && this.toSend != null && 
+					!this.toSend.hasRemaining())
+				this.key.interestOps(0);
+		}
+		
+		public void fail()
+		{
+			ConnectionLoadTest.this.failedConnections++;
+			for (int i = 0; i < this.pendingResponses; i++)
+			{
+				ConnectionLoadTest.this.statistics.record(System.nanoTime() - this.sentNanos, 
+						false);
+			}
+			reset();
+		}
+		
+		public void close()
+		{
+			reset();
+		}
+		
+		private void completeResponse(boolean succeeded)
+		{
+			this.pendingResponses--;
+			ConnectionLoadTest.this.statistics.record(System.nanoTime() - this.sentNanos, 
+					succeeded);
+		}
+		
+		private void reset()
+		{
+			this.connected = false;
+			this.pendingResponses = 0;
+			if (this.channel != null)
+			{
+				try
+				{
+					this.channel.close();
+				}
+				catch (IOException e)
+				{
+					// The connection is discarded anyway
+				}
+				this.channel = null;
+				this.key = null;
+			}
+		}
+		
+		private boolean isSuccess(CharSequence response)
+		{
+			// The status line is like "HTTP/1.1 200 OK"
+			return response.length() > 9 && response.charAt(9) < '4';
+		}
+		
+		private int findResponseLength(StringBuilder response)
+		{
+			int headerEnd = response.indexOf("\r\n\r\n");
+			if (headerEnd < 0)
+				return -1;
+			int bodyStart = headerEnd + 4;
+			
+			String headers = response.substring(0, headerEnd).toLowerCase(Locale.ROOT);
+			int lengthHeader = headers.indexOf("\r\ncontent-length:");
+			if (lengthHeader >= 0)
+			{
+				int valueStart = lengthHeader + "\r\ncontent-length:".length();
+				int valueEnd = headers.indexOf("\r\n", valueStart);
+				if (valueEnd < 0)
+					valueEnd = headers.length();
+				int length = bodyStart + Integer.parseInt(
+						headers.substring(valueStart, valueEnd).trim());
+				
+				return response.length() >= length ? length : -1;
+			}
+			
+			if (headers.contains("\r\ntransfer-encoding: chunked"))
+			{
+				// The body ends with an empty chunk
+				if (response.indexOf("0\r\n\r\n", bodyStart) == bodyStart)
+					return bodyStart + 5;
+				int lastChunk = response.indexOf("\r\n0\r\n\r\n", bodyStart);
+				return lastChunk < 0 ? -1 : lastChunk + 7;
+			}
+			
+			// The response ends when the connection is closed
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package fusrodah_test;
+
+import java.util.Arrays;
+
+/**
+ * EndpointStatistics collects the response times of a single endpoint during a load test
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class EndpointStatistics
+{
+	// ATTRIBUTES	-----------------------------
+	
+	private final String name;
+	private long[] latencies;
+	private int size;
+	private int failures;
+	
+	
+	// CONSTRUCTOR	-----------------------------
+	
+	/**
+	 * Creates a new empty statistics collection
+	 * @param name The name of the endpoint (Eg. "GET shouts/best")
+	 */
+	public EndpointStatistics(String name)
+	{
+		this.name = name;
+		this.latencies = new long[1024];
+		this.size = 0;
+		this.failures = 0;
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------------------
+	
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("%-20s %8d %8d %10.2f %10.2f", this.name, this.size, 
+				this.failures, getPercentileMillis(50), getPercentileMillis(99));
+	}
+	
+	
+	// OTHER METHODS	-------------------------
+	
+	/**
+	 * Records a single request
+	 * @param latencyNanos How long the request took
+	 * @param succeeded Did the server respond with a success status
+	 */
+	public synchronized void record(long latencyNanos, boolean succeeded)
+	{
+		if (this.size == this.latencies.length)
+			this.latencies = Arrays.copyOf(this.latencies, this.size * 2);
+		this.latencies[this.size++] = latencyNanos;
+		
+		if (!succeeded)
+			this.failures++;
+	}
+	
+	/**
+	 * @return How many requests were recorded
+	 */
+	public synchronized int getRequestAmount()
+	{
+		return this.size;
+	}
+	
+	/**
+	 * Finds a percentile of the recorded response times
+	 * @param percentile The percentile (0-100)
+	 * @return The response time at the percentile in milliseconds. 0 if there are no 
+	 * recorded requests.
+	 */
+	public synchronized double getPercentileMillis(double percentile)
+	{
+		if (this.size == 0)
+			return 0;
+		
+		long[] sorted = Arrays.copyOf(this.latencies, this.size);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000000.0;
+	}
+	
+	/**
+	 * Writes the header line matching {@link #toString()}
+	 * @return The header line
+	 */
+	public static String getHeader()
+	{
+		return String.format("%-20s %8s %8s %10s %10s", "endpoint", "requests", "failed", 
+				"p50 (ms)", "p99 (ms)");
+	}
+}
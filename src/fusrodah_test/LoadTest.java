@@ -0,0 +1,378 @@
+package fusrodah_test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import fusrodah_main.FusrodahServer;
+
+/**
+ * This class runs a load test against a server that uses an embedded MariaDB database. 
+ * Synthetic users are placed around a few city centres and each of them goes through a 
+ * login, looks for the best shouts and either shouts the best one forward or starts a new 
+ * template. The response times are reported for each endpoint. The server must use the 
+ * XML content type.
+ * 
+ * @author Mikko Hilpinen
+ * @since 17.10.2026
+ */
+public class LoadTest
+{
+	// ATTRIBUTES	--------------------------------
+	
+	private static final String PASSWORD = "loadTest";
+	private static final String[] ENDPOINTS = {"POST users", "GET login", 
+			"GET shouts/best", "POST shouts", "POST templates", "DELETE login"};
+	// The users are spread around these locations (Helsinki, Tampere, Turku)
+	private static final double[][] CITY_CENTRES = {{60.17, 24.94}, {61.50, 23.76}, 
+			{60.45, 22.27}};
+	// About two kilometres
+	private static final double CITY_SPREAD_DEGREES = 0.02;
+	
+	private static final Pattern SHOUT_LINK = Pattern.compile("shouts/(\\d+)");
+	
+	private final String serverAddress;
+	private final Map<String, EndpointStatistics> statistics;
+	
+	
+	// CONSTRUCTOR	--------------------------------
+	
+	private LoadTest(String serverAddress)
+	{
+		this.serverAddress = serverAddress;
+		this.statistics = new LinkedHashMap<>();
+		for (String endpoint : ENDPOINTS)
+		{
+			this.statistics.put(endpoint, new EndpointStatistics(endpoint));
+		}
+	}
+	
+	
+	// MAIN METHOD	--------------------------------
+	
+	/**
+	 * Starts an embedded database and a server and runs the load test against them
+	 * @param args The amount of users (optional, default = 1000). The amount of concurrent 
+	 * clients (optional, default = 50). The server port (optional, default = 7777). The 
+	 * database port (optional, default = 3307).
+	 */
+	public static void main(String[] args)
+	{
+		int userAmount = 1000;
+		int clientAmount = 50;
+		int serverPort = 7777;
+		int databasePort = 3307;
+		try
+		{
+			if (args.length > 0)
+				userAmount = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				clientAmount = Integer.parseInt(args[1]);
+			if (args.length > 2)
+				serverPort = Integer.parseInt(args[2]);
+			if (args.length > 3)
+				databasePort = Integer.parseInt(args[3]);
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println("Please provide the correct arguments: user amount, client "
+					+ "amount, server port and database port (all optional)");
+			System.exit(1);
+		}
+		
+		DB database = null;
+		try
+		{
+			// Starts the database and creates the tables
+			DBConfigurationBuilder configuration = DBConfigurationBuilder.newBuilder();
+			configuration.setPort(databasePort);
+			database = DB.newEmbeddedDB(configuration.build());
+			database.start();
+			
+			String databaseAddress = "jdbc:mysql://localhost:" + databasePort + "/";
+			createDatabases(databaseAddress, "data/create_databases_1_14.sql");
+			
+			// Starts the server in the background
+			startServer(serverPort, databaseAddress);
+			
+			LoadTest test = new LoadTest("http://127.0.0.1:" + serverPort + "/");
+			test.run(userAmount, clientAmount);
+		}
+		catch (ManagedProcessException | SQLException | IOException e)
+		{
+			System.err.println("Failed to run the load test");
+			e.printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			System.err.println("The load test was interrupted");
+		}
+		finally
+		{
+			if (database != null)
+			{
+				try
+				{
+					database.stop();
+				}
+				catch (ManagedProcessException e)
+				{
+					System.err.println("Failed to stop the database");
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		System.exit(0);
+	}
+	
+	
+	// OTHER METHODS	----------------------------
+	
+	private void run(int userAmount, int clientAmount) throws InterruptedException
+	{
+		// Creates the users first
+		Random random = new Random(42);
+		List<VirtualUser> users = new ArrayList<>();
+		for (int i = 0; i < userAmount; i++)
+		{
+			double[] centre = CITY_CENTRES[i % CITY_CENTRES.length];
+			users.add(new VirtualUser("loadUser" + i, 
+					centre[0] + random.nextGaussian() * CITY_SPREAD_DEGREES, 
+					centre[1] + random.nextGaussian() * CITY_SPREAD_DEGREES, 
+					CITY_CENTRES[random.nextInt(CITY_CENTRES.length)]));
+		}
+		runConcurrently(users, clientAmount, true);
+		
+		// Then each user acts once, in a random order
+		Collections.shuffle(users, random);
+		long started = System.nanoTime();
+		runConcurrently(users, clientAmount, false);
+		double seconds = (System.nanoTime() - started) / 1000000000.0;
+		
+		System.out.println(EndpointStatistics.getHeader() + String.format(" %10s", "req/s"));
+		int totalRequests = 0;
+		for (EndpointStatistics endpoint : this.statistics.values())
+		{
+			totalRequests += endpoint.getRequestAmount();
+			System.out.println(endpoint + String.format(" %10.1f", 
+					endpoint.getRequestAmount() / seconds));
+		}
+		System.out.println(String.format("%d requests in %.1f seconds (%.1f requests/s)", 
+				totalRequests, seconds, totalRequests / seconds));
+	}
+	
+	private void runConcurrently(List<VirtualUser> users, int clientAmount, 
+			final boolean register) throws InterruptedException
+	{
+		ExecutorService clients = Executors.newFixedThreadPool(clientAmount);
+		for (final VirtualUser user : users)
+		{
+			clients.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						if (register)
+							user.register();
+						else
+							user.act();
+					}
+					catch (IOException e)
+					{
+						System.err.println("Request failed for " + user.userName + ": " + 
+								e.getMessage());
+					}
+				}
+			});
+		}
+		
+		clients.shutdown();
+		clients.awaitTermination(1, TimeUnit.HOURS);
+	}
+	
+	private String request(String endpoint, String method, String path) throws IOException
+	{
+		long started = System.nanoTime();
+		HttpURLConnection connection = (HttpURLConnection) new URL(this.serverAddress + 
+				path).openConnection();
+		connection.setRequestMethod(method);
+		
+		int status = connection.getResponseCode();
+		InputStream input = status < 400 ? connection.getInputStream() : 
+				connection.getErrorStream();
+		String body = "";
+		if (input != null)
+		{
+			try (InputStream in = input)
+			{
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = in.read(buffer)) >= 0)
+				{
+					bytes.write(buffer, 0, read);
+				}
+				body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+			}
+		}
+		
+		this.statistics.get(endpoint).record(System.nanoTime() - started, status < 400);
+		
+		return status < 400 ? body : null;
+	}
+	
+	private static void createDatabases(String databaseAddress, String scriptFileName)
+			throws SQLException, IOException
+	{
+		String script = new String(Files.readAllBytes(Paths.get(scriptFileName)), 
+				StandardCharsets.UTF_8);
+		
+		try (Connection connection = DriverManager.getConnection(databaseAddress, "root", "");
+				Statement statement = connection.createStatement())
+		{
+			for (String sql : script.split(";"))
+			{
+				if (!sql.trim().isEmpty())
+					statement.execute(sql);
+			}
+		}
+	}
+	
+	private static void startServer(int port, String databaseAddress) throws 
+			InterruptedException
+	{
+		final String[] arguments = {"127.0.0.1", String.valueOf(port), "", "root", 
+				databaseAddress};
+		Thread server = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				FusrodahServer.main(arguments);
+			}
+		});
+		server.setDaemon(true);
+		server.start();
+		
+		// Waits until the server accepts connections
+		while (true)
+		{
+			try (Socket socket = new Socket("127.0.0.1", port))
+			{
+				return;
+			}
+			catch (IOException e)
+			{
+				Thread.sleep(100);
+			}
+		}
+	}
+	
+	private static String findValue(String body, String name)
+	{
+		if (body == null)
+			return null;
+		
+		// The value may be either an element or an attribute
+		Matcher element = Pattern.compile("<" + name + ">([^<]*)</" + name + ">").matcher(
+				body);
+		if (element.find())
+			return element.group(1);
+		
+		Matcher attribute = Pattern.compile(name + "=\"([^\"]*)\"").matcher(body);
+		if (attribute.find())
+			return attribute.group(1);
+		
+		return null;
+	}
+	
+	
+	// SUBCLASSES	--------------------------------
+	
+	private class VirtualUser
+	{
+		// ATTRIBUTES	----------------------------
+		
+		private final String userName;
+		private final String location;
+		private final String goal;
+		private String userID;
+		
+		
+		// CONSTRUCTOR	----------------------------
+		
+		public VirtualUser(String userName, double latitude, double longitude, 
+				double[] goal)
+		{
+			this.userName = userName;
+			this.location = latitude + ";" + longitude;
+			this.goal = goal[0] + ";" + goal[1];
+		}
+		
+		
+		// OTHER METHODS	------------------------
+		
+		public void register() throws IOException
+		{
+			this.userID = findValue(request("POST users", "POST", "root/users?location=" + 
+					this.location + "&userName=" + this.userName + "&password=" + PASSWORD), 
+					"id");
+		}
+		
+		public void act() throws IOException
+		{
+			if (this.userID == null)
+				return;
+			
+			String userKey = findValue(request("GET login", "GET", "root/login/" + 
+					this.userName + "?password=" + PASSWORD), "userKey");
+			if (userKey == null)
+				return;
+			
+			String auth = "&userID=" + this.userID + "&userKey=" + userKey;
+			String best = request("GET shouts/best", "GET", "root/shouts/best?amount=3" + 
+					auth + "&location=" + this.location);
+			
+			// Shouts the best shout forward if there is one. Otherwise starts a new chain.
+			Matcher shoutLink = SHOUT_LINK.matcher(best == null ? "" : best);
+			if (shoutLink.find())
+				request("POST shouts", "POST", "root/shouts?lastShoutID=" + 
+						shoutLink.group(1) + "&shouterID=" + this.userID + "&userKey=" + 
+						userKey + "&location=" + this.location);
+			else
+				request("POST templates", "POST", "root/templates?message=loadTest" + 
+						"&startLocation=" + this.location + "&endLocation=" + this.goal + 
+						"&senderID=" + this.userID + "&userKey=" + userKey);
+			
+			request("DELETE login", "DELETE", "root/login/" + this.userID + "?userKey=" + 
+					userKey);
+		}
+	}
+}